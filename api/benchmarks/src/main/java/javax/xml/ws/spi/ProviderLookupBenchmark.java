@@ -0,0 +1,273 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.xml.ws.spi;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import javax.xml.ws.WebServiceException;
+import jaxws.factory.Valid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Provider#provider()} and the uncached {@link FactoryFinder#find}
+ * lookup for each way the provider can be resolved:
+ * <ul>
+ *  <li>{@code serviceLoader} - META-INF/services/javax.xml.ws.spi.Provider names {@code jaxws.factory.Valid}
+ *  <li>{@code jdkProperties} - ${java.home}/conf/jaxws.properties names {@code jaxws.factory.Valid2};
+ *  the file is written to the JDK running the benchmark and removed afterwards
+ *  <li>{@code systemProperty} - the javax.xml.ws.spi.Provider system property names {@code jaxws.factory.Valid3}
+ *  <li>{@code fallback} - nothing is configured, {@code find} ends with the fallback class name it
+ *  is given, {@code jaxws.factory.Valid}, and {@code provider} with the platform default, which is
+ *  not part of JDK 9 and later where the failure is measured
+ * </ul>
+ * {@code coldFind} repeats the discovery of {@code find} with a new thread context
+ * class loader for every call, which defines the stub providers anew and has not
+ * read any {@code META-INF} resource yet, so nothing is served from a warm class
+ * loader either.
+ * <p>
+ * The state is per thread as the serviceLoader path relies on the thread context
+ * class loader. Run with {@code -prof gc} to get the allocation per lookup as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProviderLookupBenchmark {
+
+    private static final String FACTORY_ID = "javax.xml.ws.spi.Provider";
+
+    private static final String STUB_PACKAGE = "jaxws.factory.";
+
+    // a stub rather than the platform default, which JDK 9 and later don't have
+    private static final String FALLBACK = STUB_PACKAGE + "Valid";
+
+    @Param({"serviceLoader", "jdkProperties", "systemProperty", "fallback"})
+    public String path;
+
+    private Path tmp;
+    private Path jdkProperties;
+    private byte[] originalJdkProperties;
+    private ClassLoader contextClassLoader;
+
+    @Setup
+    public void setup() throws IOException {
+        tmp = Files.createTempDirectory("jaxws-bench");
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        System.clearProperty(FACTORY_ID);
+
+        // the same locations FactoryFinder looks at
+        String javaHome = System.getProperty("java.home");
+        jdkProperties = Paths.get(javaHome, "conf", "jaxws.properties");
+        if (!Files.isDirectory(jdkProperties.getParent())) {
+            jdkProperties = Paths.get(javaHome, "lib", "jaxws.properties");
+        }
+        if (Files.exists(jdkProperties)) {
+            if (!"jdkProperties".equals(path)) {
+                throw new IllegalStateException(jdkProperties + " is present, remove it to measure the "
+                        + path + " path");
+            }
+            originalJdkProperties = Files.readAllBytes(jdkProperties);
+        }
+
+        if ("serviceLoader".equals(path)) {
+            Path services = Files.createDirectories(tmp.resolve("META-INF").resolve("services"));
+            write(services.resolve(FACTORY_ID), "jaxws.factory.Valid");
+            Thread.currentThread().setContextClassLoader(new URLClassLoader(
+                    new URL[]{tmp.toUri().toURL()}, contextClassLoader));
+        } else if ("jdkProperties".equals(path)) {
+            write(jdkProperties, FACTORY_ID + "=jaxws.factory.Valid2");
+        } else if ("systemProperty".equals(path)) {
+            System.setProperty(FACTORY_ID, "jaxws.factory.Valid3");
+        }
+        Provider.invalidateAll();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Thread.currentThread().setContextClassLoader(contextClassLoader);
+        System.clearProperty(FACTORY_ID);
+        if ("jdkProperties".equals(path)) {
+            if (originalJdkProperties != null) {
+                Files.write(jdkProperties, originalJdkProperties);
+            } else {
+                Files.delete(jdkProperties);
+            }
+        }
+        Provider.invalidateAll();
+        delete(tmp);
+    }
+
+    /**
+     * Lookup as seen by {@code Service}, {@code Endpoint} and friends.
+     */
+    @Benchmark
+    public Object provider() {
+        try {
+            return Provider.provider();
+        } catch (WebServiceException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Full discovery, without the provider and lookup failure caches.
+     */
+    @Benchmark
+    public Object find() {
+        FactoryFinder.invalidateAll();
+        try {
+            return FactoryFinder.find(Provider.class, FALLBACK);
+        } catch (WebServiceException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Full discovery with a fresh class loader, as done once per application
+     * or redeployment.
+     */
+    @Benchmark
+    public Object coldFind(ColdClassLoader cold) {
+        try {
+            return FactoryFinder.find(Provider.class, FALLBACK);
+        } catch (WebServiceException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Sets a new thread context class loader for each call of {@link #coldFind}.
+     */
+    @State(Scope.Thread)
+    public static class ColdClassLoader {
+
+        private URLClassLoader classLoader;
+        private ClassLoader previous;
+
+        @Setup(Level.Invocation)
+        public void setup(ProviderLookupBenchmark benchmark) throws IOException {
+            URL stubs = Valid.class.getProtectionDomain().getCodeSource().getLocation();
+            URL[] urls = "serviceLoader".equals(benchmark.path)
+                    ? new URL[]{benchmark.tmp.toUri().toURL(), stubs}
+                    : new URL[]{stubs};
+            classLoader = new StubFirstClassLoader(urls, benchmark.contextClassLoader);
+            previous = Thread.currentThread().getContextClassLoader();
+            Thread.currentThread().setContextClassLoader(classLoader);
+            FactoryFinder.invalidateAll();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            Thread.currentThread().setContextClassLoader(previous);
+            FactoryFinder.invalidate(classLoader);
+            classLoader.close();
+        }
+    }
+
+    // defines the stub providers itself instead of delegating to the parent,
+    // so they are loaded again by each instance
+    private static final class StubFirstClassLoader extends URLClassLoader {
+
+        StubFirstClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(STUB_PACKAGE)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if (c == null) {
+                    c = findClass(name);
+                }
+                if (resolve) {
+                    resolveClass(c);
+                }
+                return c;
+            }
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, (content + "\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void delete(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
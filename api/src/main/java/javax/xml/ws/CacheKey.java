@@ -0,0 +1,95 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.xml.ws;
+
+import java.util.Objects;
+
+/**
+ * Key of the opt-in caches of this package: two values compared by
+ * {@code equals}, the first one possibly {@code null}, and the features,
+ * compared by identity.
+ *
+ * Features are compared by identity as {@link WebServiceFeature} does not
+ * define {@code equals}; to share a cached value, the same feature instances
+ * must be passed for each call.
+ */
+final class CacheKey {
+
+    private final Object first;
+    private final Object second;
+    private final WebServiceFeature[] features;
+    private final int hash;
+
+    CacheKey(Object first, Object second, WebServiceFeature[] features) {
+        this.first = first;
+        this.second = second;
+        this.features = features == null ? new WebServiceFeature[0] : features.clone();
+        int h = Objects.hashCode(first) * 31 + second.hashCode();
+        for (WebServiceFeature feature : this.features) {
+            h = h * 31 + System.identityHashCode(feature);
+        }
+        this.hash = h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey other = (CacheKey) obj;
+        if (hash != other.hash
+                || !second.equals(other.second)
+                || features.length != other.features.length) {
+            return false;
+        }
+        for (int i = 0; i < features.length; i++) {
+            if (features[i] != other.features[i]) {
+                return false;
+            }
+        }
+        return Objects.equals(first, other.first);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
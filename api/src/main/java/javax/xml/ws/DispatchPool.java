@@ -0,0 +1,395 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.xml.ws;
+
+import javax.xml.namespace.QName;
+import javax.xml.ws.handler.Handler;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of {@link Dispatch} instances, for reuse of dispatches
+ * by multiple threads.
+ * <p>
+ * A {@code Dispatch} is not thread safe, its request context is mutable
+ * state shared by all its invocations. Rather than synchronizing on a single
+ * instance or creating one by {@link Service#createDispatch} per call, a
+ * thread borrows a dispatch from the pool for the duration of its
+ * invocations, as a {@link Lease}, and returns it by closing the lease:
+ * <pre>
+ * try (DispatchPool.Lease&lt;Source&gt; lease = pool.borrow()) {
+ *     Dispatch&lt;Source&gt; dispatch = lease.getDispatch();
+ *     dispatch.getRequestContext().put(BindingProvider.SOAPACTION_URI_PROPERTY, action);
+ *     Source response = dispatch.invoke(request);
+ *     ...
+ * }
+ * </pre>
+ * The request context and the handler chain are per lease: changes made
+ * during a lease are undone when the dispatch is returned, they are restored
+ * to their content when the dispatch was created. Other changes to the
+ * {@link Binding} are not undone, a dispatch reconfigured otherwise should be
+ * discarded by {@link Lease#discard()}. The response context is the one of
+ * the last invocation of the dispatch, possibly made during a previous lease:
+ * it is only meaningful after an invocation made during the lease. The
+ * dispatch must not be used once its lease is closed.
+ * <p>
+ * At most {@code maximumSize} dispatches are leased at a time, borrowing
+ * waits for a dispatch to be returned when they all are. Dispatches are
+ * created when needed; idle dispatches not used for longer than the idle
+ * timeout are discarded the next time the pool is used. Dispatches
+ * implementing {@link AutoCloseable} are closed when discarded.
+ * <p>
+ * A pool is thread safe. Closing it discards its idle dispatches and
+ * the leased ones once returned.
+ *
+ * @param <T> The type of the message or payload of the dispatches
+ * @see Service#createDispatch(QName, Class, Service.Mode, WebServiceFeature...)
+ * @since JAX-WS 2.4
+ */
+public final class DispatchPool<T> implements AutoCloseable {
+
+    private final Supplier<? extends Dispatch<T>> factory;
+    private final int maximumSize;
+    private final long idleTimeout;
+    private final Semaphore permits;
+    // most recently returned first
+    private final LinkedBlockingDeque<Pooled<T>> idle = new LinkedBlockingDeque<Pooled<T>>();
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool of dispatches created by
+     * {@link Service#createDispatch(QName, Class, Service.Mode, WebServiceFeature...)}.
+     *
+     * @param service the service creating the dispatches
+     * @param portName  Qualified name for the target service endpoint
+     * @param type The class of object used for messages or message
+     * payloads. Implementations are required to support
+     * {@code javax.xml.transform.Source}, {@code javax.xml.soap.SOAPMessage}
+     * and {@code javax.activation.DataSource}, depending on
+     * the binding in use.
+     * @param mode Controls whether the created dispatch instance is message
+     * or payload oriented, i.e. whether the client will work with complete
+     * protocol messages or message payloads.
+     * @param maximumSize maximum number of dispatches leased at a time
+     * @param idleTimeout time after which an idle dispatch is discarded
+     * @param unit unit of {@code idleTimeout}
+     * @param features  A list of {@code WebServiceFeatures} to configure on the
+     *                 dispatches.
+     * @throws IllegalArgumentException if {@code maximumSize} is not positive
+     *                 or {@code idleTimeout} is negative
+     */
+    public DispatchPool(final Service service, final QName portName, final Class<T> type, final Service.Mode mode,
+                        int maximumSize, long idleTimeout, TimeUnit unit, final WebServiceFeature... features) {
+        this(new Supplier<Dispatch<T>>() {
+            @Override
+            public Dispatch<T> get() {
+                return service.createDispatch(portName, type, mode, features);
+            }
+        }, maximumSize, idleTimeout, unit);
+    }
+
+    /**
+     * Creates a pool of dispatches created by given factory, e.g. a call of
+     * a {@code createDispatch} method of a {@link Service}. Each call of the
+     * factory must return a new dispatch.
+     *
+     * @param factory creates the dispatches of the pool
+     * @param maximumSize maximum number of dispatches leased at a time
+     * @param idleTimeout time after which an idle dispatch is discarded
+     * @param unit unit of {@code idleTimeout}
+     * @throws IllegalArgumentException if {@code maximumSize} is not positive
+     *                 or {@code idleTimeout} is negative
+     */
+    public DispatchPool(Supplier<? extends Dispatch<T>> factory, int maximumSize, long idleTimeout, TimeUnit unit) {
+        if (factory == null) {
+            throw new NullPointerException("factory");
+        }
+        if (maximumSize <= 0 || idleTimeout < 0) {
+            throw new IllegalArgumentException("Invalid maximumSize or idleTimeout: " + maximumSize + ", " + idleTimeout);
+        }
+        this.factory = factory;
+        this.maximumSize = maximumSize;
+        this.idleTimeout = unit.toNanos(idleTimeout);
+        this.permits = new Semaphore(maximumSize, true);
+    }
+
+    /**
+     * Borrows a dispatch, waiting for one to be returned if the maximum
+     * number of dispatches is leased.
+     *
+     * @return the lease of the dispatch, to be closed once the dispatch is no longer used
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the pool is closed
+     * @throws WebServiceException if creating a dispatch fails
+     */
+    public Lease<T> borrow() throws InterruptedException {
+        checkOpen();
+        permits.acquire();
+        return lease();
+    }
+
+    /**
+     * Borrows a dispatch, waiting up to given time for one to be returned
+     * if the maximum number of dispatches is leased.
+     *
+     * @param timeout maximum time to wait
+     * @param unit unit of {@code timeout}
+     * @return the lease of the dispatch, to be closed once the dispatch is
+     *         no longer used, or {@code null} if none was available in time
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the pool is closed
+     * @throws WebServiceException if creating a dispatch fails
+     */
+    public Lease<T> borrow(long timeout, TimeUnit unit) throws InterruptedException {
+        checkOpen();
+        if (!permits.tryAcquire(timeout, unit)) {
+            return null;
+        }
+        return lease();
+    }
+
+    // with a permit acquired
+    private Lease<T> lease() {
+        try {
+            // closed while waiting for the permit
+            checkOpen();
+            evictIdle(System.nanoTime());
+            Pooled<T> pooled = idle.pollFirst();
+            if (pooled == null) {
+                Dispatch<T> dispatch = factory.get();
+                Binding binding = dispatch.getBinding();
+                pooled = new Pooled<T>(dispatch, new HashMap<String, Object>(dispatch.getRequestContext()),
+                        binding != null ? binding.getHandlerChain() : null);
+            }
+            return new Lease<T>(this, pooled);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // the dispatch of a closed lease, discarded if it can't be reset
+    private void giveBack(Pooled<T> pooled, boolean discard) {
+        try {
+            if (!discard && !closed) {
+                try {
+                    Map<String, Object> context = pooled.dispatch.getRequestContext();
+                    context.clear();
+                    context.putAll(pooled.baseline);
+                    restoreHandlerChain(pooled);
+                    pooled.idleSince = System.nanoTime();
+                    idle.offerFirst(pooled);
+                } catch (RuntimeException e) {
+                    discard(pooled);
+                }
+                if (closed) {
+                    // closed meanwhile
+                    discardIdle();
+                }
+            } else {
+                discard(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Binding declares the handler chain as a list of raw handlers
+    @SuppressWarnings("rawtypes")
+    private static void restoreHandlerChain(Pooled<?> pooled) {
+        if (pooled.handlerChain != null) {
+            Binding binding = pooled.dispatch.getBinding();
+            if (!pooled.handlerChain.equals(binding.getHandlerChain())) {
+                binding.setHandlerChain(new ArrayList<Handler>(pooled.handlerChain));
+            }
+        }
+    }
+
+    // idle dispatches are ordered by last use, the oldest are last
+    private void evictIdle(long now) {
+        for (Pooled<T> pooled = idle.peekLast();
+             pooled != null && now - pooled.idleSince > idleTimeout;
+             pooled = idle.peekLast()) {
+            if (idle.removeLastOccurrence(pooled)) {
+                discard(pooled);
+            }
+        }
+    }
+
+    private void discardIdle() {
+        for (Pooled<T> pooled = idle.pollFirst(); pooled != null; pooled = idle.pollFirst()) {
+            discard(pooled);
+        }
+    }
+
+    private static void discard(Pooled<?> pooled) {
+        if (pooled.dispatch instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) pooled.dispatch).close();
+            } catch (Exception e) {
+                // discarded anyway
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("DispatchPool is closed");
+        }
+    }
+
+    /**
+     * Returns the maximum number of dispatches leased at a time.
+     *
+     * @return maximum number of dispatches
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the number of dispatches currently leased.
+     *
+     * @return number of leased dispatches
+     */
+    public int getLeasedCount() {
+        return maximumSize - permits.availablePermits();
+    }
+
+    /**
+     * Returns the number of idle dispatches, including the ones idle for
+     * longer than the idle timeout and not discarded yet.
+     *
+     * @return number of idle dispatches
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Closes the pool: the idle dispatches are discarded, the leased ones
+     * are discarded once returned; borrowing fails from now on.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        discardIdle();
+    }
+
+    /**
+     * The lease of a dispatch borrowed from a {@link DispatchPool}, closing
+     * the lease returns the dispatch to the pool.
+     * <p>
+     * A lease is meant to be used by a single thread.
+     *
+     * @param <T> The type of the message or payload of the dispatch
+     * @since JAX-WS 2.4
+     */
+    public static final class Lease<T> implements AutoCloseable {
+
+        private final DispatchPool<T> pool;
+        private Pooled<T> pooled;
+
+        Lease(DispatchPool<T> pool, Pooled<T> pooled) {
+            this.pool = pool;
+            this.pooled = pooled;
+        }
+
+        /**
+         * Gets the leased dispatch.
+         *
+         * @return the dispatch, not to be used once the lease is closed
+         * @throws IllegalStateException if the lease is closed
+         */
+        public Dispatch<T> getDispatch() {
+            if (pooled == null) {
+                throw new IllegalStateException("Lease is closed");
+            }
+            return pooled.dispatch;
+        }
+
+        /**
+         * Closes the lease and discards the dispatch instead of returning it
+         * to the pool, e.g. once it failed in a way which makes it unusable.
+         * Does nothing if the lease is closed.
+         */
+        public void discard() {
+            release(true);
+        }
+
+        /**
+         * Closes the lease, returning the dispatch to the pool with its request
+         * context and handler chain restored. Does nothing if the lease is closed.
+         */
+        @Override
+        public void close() {
+            release(false);
+        }
+
+        private void release(boolean discard) {
+            Pooled<T> released = pooled;
+            if (released != null) {
+                pooled = null;
+                pool.giveBack(released, discard);
+            }
+        }
+    }
+
+    // a dispatch with the request context and handler chain it was created with
+    @SuppressWarnings("rawtypes")
+    private static final class Pooled<T> {
+        final Dispatch<T> dispatch;
+        final Map<String, Object> baseline;
+        final List<Handler> handlerChain;
+        volatile long idleSince;
+
+        Pooled(Dispatch<T> dispatch, Map<String, Object> baseline, List<Handler> handlerChain) {
+            this.dispatch = dispatch;
+            this.baseline = baseline;
+            this.handlerChain = handlerChain;
+        }
+    }
+}
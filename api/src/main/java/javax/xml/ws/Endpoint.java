@@ -42,6 +42,7 @@ package javax.xml.ws;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import javax.xml.ws.spi.Provider;
 import javax.xml.ws.spi.http.HttpContext;
 import javax.xml.ws.wsaddressing.W3CEndpointReference;
@@ -68,6 +69,14 @@ import org.w3c.dom.Element;
  * can be enabled by creating a {@code ThreadPoolExecutor} and
  * registering it with the endpoint.
  *
+ * <p>An endpoint created or published with a {@link VirtualThreadsFeature}
+ * is given an executor starting a virtual thread for each request. That
+ * executor keeps no idle threads and is not shut down by {@link #stop()};
+ * it may be obtained by {@link #getExecutor()} and shut down once the
+ * endpoint is stopped. If publishing fails,
+ * {@link #publish(String, Object, WebServiceFeature...)} stops the endpoint
+ * and shuts the executor down.
+ *
  * <p>Handler chains can be set using the contained {@code Binding}.
  *
  * <p>An endpoint may have a list of metadata documents, such as WSDL
@@ -129,7 +138,9 @@ public abstract class Endpoint {
      * @param implementor The endpoint implementor.
      * @param features A list of WebServiceFeature to configure on the
      *        endpoint. Supported features not in the {@code features
-     *        } parameter will have their default values.
+     *        } parameter will have their default values. A
+     *        {@link VirtualThreadsFeature} is handled by this method,
+     *        not passed to the provider.
      *
      *
      * @return The newly created endpoint.
@@ -177,15 +188,34 @@ public abstract class Endpoint {
      *
      * @param features A list of WebServiceFeature to configure on the
      *        endpoint. Supported features not in the {@code features
-     *        } parameter will have their default values.
+     *        } parameter will have their default values. A
+     *        {@link VirtualThreadsFeature} is handled by this method,
+     *        not passed to the provider.
      *
      * @return The newly created endpoint.
      * @since 1.7, JAX-WS 2.2
      */
     public static Endpoint create(String bindingId, Object implementor, WebServiceFeature ... features) {
+        if (VirtualThreadsFeature.isEnabled(features)) {
+            return create(bindingId, implementor, VirtualThreadsFeature.newExecutor(), features);
+        }
         return Provider.provider().createEndpoint(bindingId, implementor, features);
     }
 
+    // endpoint using given executor, shut down if the endpoint can't be created
+    private static Endpoint create(String bindingId, Object implementor, ExecutorService executor,
+                                   WebServiceFeature[] features) {
+        try {
+            Endpoint endpoint = Provider.provider().createEndpoint(bindingId, implementor,
+                    VirtualThreadsFeature.without(features));
+            endpoint.setExecutor(executor);
+            return endpoint;
+        } catch (RuntimeException | Error e) {
+            executor.shutdown();
+            throw e;
+        }
+    }
+
     /**
      * Returns the binding for this endpoint.
      *
@@ -273,7 +303,9 @@ public abstract class Endpoint {
      * @param implementor The endpoint implementor.
      * @param features A list of WebServiceFeature to configure on the
      *        endpoint. Supported features not in the {@code features
-     *        } parameter will have their default values.
+     *        } parameter will have their default values. A
+     *        {@link VirtualThreadsFeature} is handled by this method,
+     *        not passed to the provider.
      * @return The newly created endpoint.
      *
      * @throws java.lang.SecurityException
@@ -283,7 +315,26 @@ public abstract class Endpoint {
      * @since 1.7, JAX-WS 2.2
      */
     public static Endpoint publish(String address, Object implementor, WebServiceFeature ... features) {
-        return Provider.provider().createAndPublishEndpoint(address, implementor, features);
+        if (VirtualThreadsFeature.isEnabled(features)) {
+            // the executor must be set before publishing
+            ExecutorService executor = VirtualThreadsFeature.newExecutor();
+            Endpoint endpoint = create(null, implementor, executor, features);
+            try {
+                endpoint.publish(address);
+            } catch (RuntimeException | Error e) {
+                try {
+                    endpoint.stop();
+                } catch (RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                } finally {
+                    executor.shutdown();
+                }
+                throw e;
+            }
+            return endpoint;
+        }
+        return Provider.provider().createAndPublishEndpoint(address, implementor,
+                VirtualThreadsFeature.without(features));
     }
 
     /**
@@ -0,0 +1,160 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.xml.ws;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Bounded least recently used cache with hit, miss and eviction counts,
+ * shared by the opt-in caches of this package.
+ *
+ * Values are created by the callers outside of the cache lock, if two
+ * threads create a value for the same key, the first one put in wins.
+ * The values evicted or cleared are passed to the removal listener, if
+ * any, outside of the cache lock.
+ */
+final class LruCache<K, V> {
+
+    private final int maximumSize;
+    private final Map<K, V> map;
+    private final Consumer<? super V> removalListener;
+    // set by the map when a put evicts the eldest value
+    private V evicted;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    LruCache(int maximumSize) {
+        this(maximumSize, null);
+    }
+
+    LruCache(int maximumSize, Consumer<? super V> removalListener) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximumSize must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.removalListener = removalListener;
+        this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.maximumSize) {
+                    evictions++;
+                    evicted = eldest.getValue();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns value cached for given key, counting a hit or a miss.
+     */
+    synchronized V get(K key) {
+        V value = map.get(key);
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    /**
+     * Caches given value unless there is one for given key already.
+     *
+     * @return the value cached for the key
+     */
+    V putIfAbsent(K key, V value) {
+        V removed;
+        synchronized (this) {
+            V cached = map.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            map.put(key, value);
+            removed = evicted;
+            evicted = null;
+        }
+        if (removed != null && removalListener != null) {
+            removalListener.accept(removed);
+        }
+        return value;
+    }
+
+    void clear() {
+        List<V> removed;
+        synchronized (this) {
+            removed = removalListener != null ? new ArrayList<V>(map.values()) : null;
+            map.clear();
+        }
+        if (removed != null) {
+            for (V value : removed) {
+                removalListener.accept(value);
+            }
+        }
+    }
+
+    int maximumSize() {
+        return maximumSize;
+    }
+
+    synchronized int size() {
+        return map.size();
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+}
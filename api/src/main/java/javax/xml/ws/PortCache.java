@@ -0,0 +1,437 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.xml.ws;
+
+import javax.xml.ws.wsaddressing.W3CEndpointReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * An opt-in, bounded cache of the proxies returned by
+ * {@link EndpointReference#getPort(Class, WebServiceFeature...)}.
+ * <p>
+ * Creating a proxy for an {@code EndpointReference} is expensive compared to
+ * a typical invocation, which matters when proxies are created for the same
+ * {@code EndpointReference}, e.g. a {@code ReplyTo} of many requests, over and
+ * over. A {@code PortCache} keeps the proxies created, keyed by:
+ * <ul>
+ *   <li>the {@code EndpointReference}; {@link W3CEndpointReference}s are
+ *       compared structurally, other {@code EndpointReference}s by their
+ *       infoset, see {@link EndpointReference#toString()},
+ *   <li>the service endpoint interface,
+ *   <li>the features, compared by identity: to share proxies, the same
+ *       feature instances must be passed for each call, e.g. constants.
+ * </ul>
+ * When the maximum size is reached, the least recently used proxy is
+ * evicted. The hits, misses and evictions are counted.
+ * <p>
+ * A proxy returned by the cache is shared by all its callers, possibly
+ * concurrently. Its contexts follow the model of
+ * {@link javax.xml.ws.spi.ServiceDelegate#getSharedPort(javax.xml.namespace.QName, Class, WebServiceFeature...)
+ * shared ports}: the {@link BindingProvider#getRequestContext() request context}
+ * and {@link BindingProvider#getResponseContext() response context} are the
+ * calling thread's own, the request context starts as a copy of the one set
+ * up by the {@code initializer} given to {@link #PortCache(int, Consumer)}
+ * and is reset to it by each invocation, and the response context is the one
+ * of the last invocation made by the thread. The invocations are made by
+ * ports created on demand and reused, so that concurrent invocations don't
+ * share a port; the binding returned by the proxy, including its handler
+ * chain, is the one of the first port and should not be reconfigured.
+ * At most as many ports as available processors, and at least 4, are kept
+ * idle by a proxy, the others are discarded once their invocation returns;
+ * discarded ports implementing {@link AutoCloseable} are closed.
+ * <p>
+ * The proxies evicted or cleared from the cache release the contexts of
+ * all the threads which used them, as well as their idle ports. Callers
+ * still holding such a proxy can use it, its ports are then discarded
+ * after each invocation.
+ * <p>
+ * The cache is not used unless created by the application, it is
+ * thread safe.
+ *
+ * @see EndpointReference#getPort(Class, WebServiceFeature...)
+ * @since JAX-WS 2.4
+ */
+public final class PortCache {
+
+    private final LruCache<CacheKey, Object> cache;
+    private final Consumer<? super BindingProvider> initializer;
+
+    /**
+     * Creates a cache of at most given number of proxies.
+     *
+     * @param maximumSize maximum number of proxies cached
+     * @throws IllegalArgumentException if {@code maximumSize} is not positive
+     */
+    public PortCache(int maximumSize) {
+        this(maximumSize, null);
+    }
+
+    /**
+     * Creates a cache of at most given number of proxies. Each port created
+     * to make the invocations of a cached proxy is passed to given
+     * {@code initializer} before it is used; the request context of the first
+     * port, as set up by the {@code initializer}, is the initial request
+     * context of the proxy.
+     *
+     * @param maximumSize maximum number of proxies cached
+     * @param initializer sets up a new port, may be {@code null}
+     * @throws IllegalArgumentException if {@code maximumSize} is not positive
+     */
+    public PortCache(int maximumSize, Consumer<? super BindingProvider> initializer) {
+        this.cache = new LruCache<CacheKey, Object>(maximumSize, PortCache::retire);
+        this.initializer = initializer;
+    }
+
+    /**
+     * Returns a cached proxy for given arguments, creating it by
+     * {@link EndpointReference#getPort(Class, WebServiceFeature...)}
+     * if it is not cached.
+     *
+     * @param <T> Service endpoint interface
+     * @param endpointReference the {@code EndpointReference} that will be invoked
+     *                by the returned proxy
+     * @param serviceEndpointInterface Service endpoint interface
+     * @param features  An array of {@code WebServiceFeatures} to configure on the
+     *                proxy
+     * @return Object Proxy instance that supports the
+     *                specified service endpoint interface, shared with
+     *                the other callers of this method with the same arguments
+     * @throws WebServiceException
+     *                In the cases listed by
+     *                {@link EndpointReference#getPort(Class, WebServiceFeature...)}
+     * @throws NullPointerException
+     *                If the {@code null} {@code endpointReference} or
+     *                {@code serviceEndpointInterface} is given
+     */
+    public <T> T getPort(EndpointReference endpointReference, Class<T> serviceEndpointInterface,
+                         WebServiceFeature... features) {
+
+        if (serviceEndpointInterface == null) {
+            throw new NullPointerException("serviceEndpointInterface");
+        }
+        // W3CEndpointReferences compare structurally, others by their infoset
+        CacheKey key = new CacheKey(endpointReference instanceof W3CEndpointReference
+                ? endpointReference
+                : endpointReference.toString(), serviceEndpointInterface, features);
+        Object port = cache.get(key);
+        if (port == null) {
+            Object created = share(endpointReference, serviceEndpointInterface, features);
+            port = cache.putIfAbsent(key, created);
+            if (port != created) {
+                // lost the race to another caller
+                retire(created);
+            }
+        }
+        return serviceEndpointInterface.cast(port);
+    }
+
+    /**
+     * Removes all the cached proxies, the counts are kept.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of cached proxies.
+     *
+     * @return number of cached proxies
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the maximum number of cached proxies.
+     *
+     * @return maximum number of cached proxies
+     */
+    public int getMaximumSize() {
+        return cache.maximumSize();
+    }
+
+    /**
+     * Returns the number of calls of {@code getPort} which found
+     * the proxy in the cache.
+     *
+     * @return number of hits
+     */
+    public long getHitCount() {
+        return cache.hits();
+    }
+
+    /**
+     * Returns the number of calls of {@code getPort} which didn't find
+     * the proxy in the cache.
+     *
+     * @return number of misses
+     */
+    public long getMissCount() {
+        return cache.misses();
+    }
+
+    /**
+     * Returns the number of proxies evicted from the cache to keep
+     * its maximum size.
+     *
+     * @return number of evictions
+     */
+    public long getEvictionCount() {
+        return cache.evictions();
+    }
+
+    // proxy with the same interfaces as the port, making the invocations by pooled ports
+    private Object share(EndpointReference endpointReference, Class<?> serviceEndpointInterface,
+                         WebServiceFeature[] features) {
+        Object port = endpointReference.getPort(serviceEndpointInterface, features);
+        if (!(port instanceof BindingProvider)) {
+            return port;
+        }
+        Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+        interfaces.add(serviceEndpointInterface);
+        for (Class<?> c = port.getClass(); c != null; c = c.getSuperclass()) {
+            interfaces.addAll(Arrays.asList(c.getInterfaces()));
+        }
+        SharedPort shared = new SharedPort(endpointReference, serviceEndpointInterface, features,
+                initializer, (BindingProvider) port);
+        try {
+            return Proxy.newProxyInstance(port.getClass().getClassLoader(),
+                    interfaces.toArray(new Class<?>[interfaces.size()]), shared);
+        } catch (IllegalArgumentException e) {
+            throw new WebServiceException("Port of " + serviceEndpointInterface.getName() + " can't be shared.", e);
+        }
+    }
+
+    // releases what a proxy removed from the cache holds for its callers
+    private static void retire(Object port) {
+        if (Proxy.isProxyClass(port.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(port);
+            if (handler instanceof SharedPort) {
+                ((SharedPort) handler).retire();
+            }
+        }
+    }
+
+    // the contexts of a thread, see SharedPort#invoke
+    private static final class Contexts {
+        volatile Map<String, Object> request;
+        volatile Map<String, Object> response;
+    }
+
+    private static final class SharedPort implements InvocationHandler {
+        private static final Method GET_REQUEST_CONTEXT;
+        private static final Method GET_RESPONSE_CONTEXT;
+
+        static {
+            try {
+                GET_REQUEST_CONTEXT = BindingProvider.class.getMethod("getRequestContext");
+                GET_RESPONSE_CONTEXT = BindingProvider.class.getMethod("getResponseContext");
+            } catch (NoSuchMethodException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        // at most as many idle ports as processors, bounded so that a burst of
+        // concurrent invocations does not keep its ports forever
+        static final int MAX_IDLE = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        private final EndpointReference endpointReference;
+        private final Class<?> serviceEndpointInterface;
+        private final WebServiceFeature[] features;
+        private final Consumer<? super BindingProvider> initializer;
+
+        // answers the calls not making an invocation, e.g. getBinding()
+        private final BindingProvider first;
+        private final Map<String, Object> initialRequestContext;
+        // ports not making an invocation at the moment
+        private final Queue<BindingProvider> idle = new ArrayBlockingQueue<BindingProvider>(MAX_IDLE);
+        // set once removed from the cache, the ports are then discarded after use
+        private volatile boolean retired;
+
+        // contexts of each thread using the proxy, also kept weakly so that they can
+        // be released once retired: pooled threads would keep them otherwise
+        private final Set<Contexts> threads = Collections.newSetFromMap(new WeakHashMap<Contexts, Boolean>());
+        private final ThreadLocal<Contexts> contexts = new ThreadLocal<Contexts>() {
+            @Override
+            protected Contexts initialValue() {
+                Contexts contexts = new Contexts();
+                synchronized (threads) {
+                    threads.add(contexts);
+                }
+                return contexts;
+            }
+        };
+
+        SharedPort(EndpointReference endpointReference, Class<?> serviceEndpointInterface,
+                   WebServiceFeature[] features, Consumer<? super BindingProvider> initializer,
+                   BindingProvider port) {
+            this.endpointReference = endpointReference;
+            this.serviceEndpointInterface = serviceEndpointInterface;
+            this.features = features == null ? null : features.clone();
+            this.initializer = initializer;
+            initialize(port);
+            this.first = port;
+            this.initialRequestContext = new HashMap<String, Object>(port.getRequestContext());
+            idle.offer(port);
+        }
+
+        private BindingProvider initialize(BindingProvider port) {
+            if (initializer != null) {
+                initializer.accept(port);
+            }
+            return port;
+        }
+
+        void retire() {
+            retired = true;
+            contexts.remove();
+            synchronized (threads) {
+                for (Contexts released : threads) {
+                    released.request = null;
+                    released.response = null;
+                }
+                threads.clear();
+            }
+            discardIdle();
+        }
+
+        private void release(BindingProvider port) {
+            if (!idle.offer(port)) {
+                discard(port);
+            } else if (retired) {
+                // may have been offered after retire() discarded the idle ports
+                discardIdle();
+            }
+        }
+
+        private void discardIdle() {
+            for (BindingProvider port = idle.poll(); port != null; port = idle.poll()) {
+                discard(port);
+            }
+        }
+
+        private void discard(BindingProvider port) {
+            // the first port keeps answering the calls not making an invocation
+            if (port != first && port instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) port).close();
+                } catch (Exception e) {
+                    // discarded anyway
+                }
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (GET_REQUEST_CONTEXT.equals(method)) {
+                Contexts thread = contexts.get();
+                Map<String, Object> requestContext = thread.request;
+                if (requestContext == null) {
+                    requestContext = new HashMap<String, Object>(initialRequestContext);
+                    thread.request = requestContext;
+                }
+                return requestContext;
+            }
+            if (GET_RESPONSE_CONTEXT.equals(method)) {
+                Map<String, Object> responseContext = contexts.get().response;
+                return responseContext != null ? responseContext : Collections.<String, Object>emptyMap();
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                if ("equals".equals(method.getName())) {
+                    return proxy == args[0];
+                }
+                if ("hashCode".equals(method.getName())) {
+                    return System.identityHashCode(proxy);
+                }
+            }
+            if (method.getDeclaringClass() == BindingProvider.class || method.getDeclaringClass() == Object.class) {
+                return delegate(first, method, args);
+            }
+
+            // the request context of the thread is used once, the next call starts from the initial one
+            Contexts thread = contexts.get();
+            Map<String, Object> requestContext = thread.request;
+            thread.request = null;
+            if (requestContext == null) {
+                requestContext = initialRequestContext;
+            }
+            BindingProvider port = idle.poll();
+            if (port == null) {
+                port = initialize((BindingProvider) endpointReference.getPort(serviceEndpointInterface, features));
+            }
+            Map<String, Object> portContext = port.getRequestContext();
+            try {
+                portContext.clear();
+                portContext.putAll(requestContext);
+                return delegate(port, method, args);
+            } finally {
+                Map<String, Object> responseContext = port.getResponseContext();
+                thread.response = responseContext != null
+                        ? Collections.unmodifiableMap(new HashMap<String, Object>(responseContext))
+                        : Collections.<String, Object>emptyMap();
+                // an idle port doesn't keep the request context of its last caller
+                portContext.clear();
+                release(port);
+            }
+        }
+
+        private static Object delegate(Object port, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(port, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -72,15 +72,21 @@ import javax.xml.ws.spi.Provider;
  * can be enabled by creating a {@code ThreadPoolExecutor} and
  * registering it with the service.
  *
+ * <p>A {@code Service} holds resources, e.g. connections used by the
+ * proxies and dispatches it creates, until it is closed by {@link #close()},
+ * e.g. by a {@code try}-with-resources statement.
+ *
  * @since 1.6, JAX-WS 2.0
  *
  * @see javax.xml.ws.spi.Provider
  * @see javax.xml.ws.handler.HandlerResolver
  * @see java.util.concurrent.Executor
  **/
-public class Service {
+public class Service implements AutoCloseable {
 
     private ServiceDelegate delegate;
+    // created for VirtualThreadsFeature, shut down on close
+    private java.util.concurrent.ExecutorService virtualThreads;
     /**
      * The orientation of a dynamic client or service. {@code MESSAGE} provides
      * access to entire protocol message, {@code PAYLOAD} to protocol message
@@ -126,12 +132,27 @@ public class Service {
      * @param serviceName {@code QName} for the service
      * @param features Web Service features that must be configured on
      *        the service. If the provider doesn't understand a feature,
-     *        it must throw a WebServiceException.
+     *        it must throw a WebServiceException. A {@link VirtualThreadsFeature}
+     *        is handled by this constructor, not passed to the provider.
      */
     protected Service(java.net.URL wsdlDocumentLocation, QName serviceName, WebServiceFeature ... features) {
-        delegate = Provider.provider().createServiceDelegate(wsdlDocumentLocation,
-                serviceName,
-                this.getClass(), features);
+        if (VirtualThreadsFeature.isEnabled(features)) {
+            // created first, so that no delegate is left behind if virtual threads are not supported
+            virtualThreads = VirtualThreadsFeature.newExecutor();
+        }
+        try {
+            delegate = Provider.provider().createServiceDelegate(wsdlDocumentLocation,
+                    serviceName,
+                    this.getClass(), VirtualThreadsFeature.without(features));
+            if (virtualThreads != null) {
+                delegate.setExecutor(virtualThreads);
+            }
+        } catch (RuntimeException | Error e) {
+            if (virtualThreads != null) {
+                virtualThreads.shutdown();
+            }
+            throw e;
+        }
     }
 
 
@@ -279,6 +300,67 @@ public class Service {
         return delegate.getPort(serviceEndpointInterface, features);
     }
 
+    /**
+     * The {@code getSharedPort} method returns a proxy which may be shared
+     * by all the calls with the same arguments, possibly from multiple
+     * threads, saving the creation of a proxy, its binding and handler
+     * chain for each call.
+     * <p>
+     * The request and response contexts of a shared proxy are scoped to
+     * a single invocation, so it can be used concurrently: the request
+     * context of a thread applies to its next invocation only, and the
+     * response context is the one of the last invocation made by the thread.
+     * The binding of a shared proxy is shared and should not be reconfigured
+     * by the client. Whether the proxies are
+     * actually cached depends on the JAX-WS implementation, see
+     * {@link javax.xml.ws.spi.ServiceDelegate#getSharedPort(QName, Class, WebServiceFeature...)}.
+     *
+     * @param <T> Service endpoint interface.
+     * @param portName  Qualified name of the service endpoint in
+     *                  the WSDL service description.
+     * @param serviceEndpointInterface Service endpoint interface
+     *                  supported by the dynamic proxy instance.
+     * @param features  A list of WebServiceFeatures to configure on the
+     *                proxy.  Supported features not in the {@code features
+     *                } parameter will have their default values.
+     * @return Object Proxy instance that
+     *                supports the specified service endpoint
+     *                interface, possibly shared.
+     * @throws WebServiceException In the cases listed by
+     *                {@link #getPort(QName, Class, WebServiceFeature...)}
+     *
+     * @see #getPort(QName, Class, WebServiceFeature...)
+     *
+     * @since JAX-WS 2.4
+     **/
+    public <T> T getSharedPort(QName portName,
+            Class<T> serviceEndpointInterface, WebServiceFeature... features) {
+        return delegate.getSharedPort(portName, serviceEndpointInterface, features);
+    }
+
+    /**
+     * The {@code getSharedPort} method returns a proxy which may be shared,
+     * the runtime selecting the port as by
+     * {@link #getPort(Class, WebServiceFeature...)}. See
+     * {@link #getSharedPort(QName, Class, WebServiceFeature...)}.
+     *
+     * @param <T> Service endpoint interface.
+     * @param serviceEndpointInterface Service endpoint interface.
+     * @param features  An array of WebServiceFeatures to configure on the
+     *                proxy.  Supported features not in the {@code features
+     *                } parameter will have their default values.
+     * @return Object instance that supports the
+     *                  specified service endpoint interface, possibly shared.
+     * @throws WebServiceException In the cases listed by
+     *                {@link #getPort(Class, WebServiceFeature...)}
+     *
+     * @since JAX-WS 2.4
+     **/
+    public <T> T getSharedPort(Class<T> serviceEndpointInterface,
+            WebServiceFeature... features) {
+        return delegate.getSharedPort(serviceEndpointInterface, features);
+    }
+
 
     /**
      * The {@code getPort} method returns a proxy.
@@ -746,6 +828,40 @@ public class Service {
         delegate.setExecutor(executor);
     }
 
+    /**
+     * Closes this {@code Service}, releasing the resources it holds.
+     * <p>
+     * The proxies and {@code Dispatch} instances created by this service
+     * are released too, deterministically: their resources, e.g.
+     * connections, are released when this method returns, and invoking them
+     * afterwards may fail with a {@link WebServiceException}. The executor
+     * created for a {@link VirtualThreadsFeature} is shut down, an executor
+     * set by {@link #setExecutor(java.util.concurrent.Executor)} is left to
+     * its owner. Closing a closed service has no effect.
+     * <p>
+     * A {@code Service} shared by several callers, e.g. one returned by a
+     * {@link ServiceCache}, must not be closed by them: closing it releases
+     * the proxies and dispatches of all its callers. It is closed, if at
+     * all, by the code owning it once no caller uses it any more.
+     *
+     * @throws WebServiceException If an error occurs while releasing
+     *         the resources; the service is closed nevertheless.
+     *
+     * @see javax.xml.ws.spi.ServiceDelegate#close()
+     *
+     * @since JAX-WS 2.4
+     **/
+    @Override
+    public void close() {
+        try {
+            delegate.close();
+        } finally {
+            if (virtualThreads != null) {
+                virtualThreads.shutdown();
+            }
+        }
+    }
+
     /**
      * Creates a {@code Service} instance.
      *
@@ -0,0 +1,197 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.xml.ws;
+
+import javax.xml.namespace.QName;
+import java.net.URL;
+
+/**
+ * An opt-in, bounded cache of {@link Service} instances.
+ * <p>
+ * Creating a {@code Service} typically reads and parses its WSDL document,
+ * which is expensive compared to the invocations done with it. Code creating
+ * a {@code Service} per request can share one instance instead by getting it
+ * from a {@code ServiceCache}, which keeps the instances created by
+ * {@link Service#create(URL, QName, WebServiceFeature...)}, keyed by:
+ * <ul>
+ *   <li>the WSDL document location, compared by its external form, see
+ *       {@link URL#toExternalForm()},
+ *   <li>the service name,
+ *   <li>the features, compared by identity: to share instances, the same
+ *       feature instances must be passed for each call, e.g. constants.
+ * </ul>
+ * When the maximum size is reached, the least recently used instance is
+ * evicted. The hits, misses and evictions are counted.
+ * <p>
+ * A {@code Service} returned by the cache is shared by all its callers,
+ * possibly concurrently, but it is not immutable: its handler resolver,
+ * executor and added ports affect all of them. Such configuration must be
+ * done once, by the code creating the cache, or not at all. The ports and
+ * dispatches created by a shared {@code Service} are not shared, they are
+ * the callers' own.
+ * <p>
+ * For the same reason, the callers must not close a cached {@code Service}
+ * by {@link Service#close()}, which would release the proxies and dispatches
+ * created by all of them and leave a closed instance in the cache. The
+ * services evicted or cleared from the cache are not closed either, as
+ * their callers may still use them; their resources are released when they
+ * are garbage collected. Only a service created by a caller which found
+ * the service cached by another one meanwhile is closed, as it is returned
+ * to none.
+ * <p>
+ * The cache is not used unless created by the application, it is
+ * thread safe.
+ *
+ * @see Service#create(URL, QName, WebServiceFeature...)
+ * @see PortCache
+ * @since JAX-WS 2.4
+ */
+public final class ServiceCache {
+
+    private final LruCache<CacheKey, Service> cache;
+
+    /**
+     * Creates a cache of at most given number of services.
+     *
+     * @param maximumSize maximum number of services cached
+     * @throws IllegalArgumentException if {@code maximumSize} is not positive
+     */
+    public ServiceCache(int maximumSize) {
+        this.cache = new LruCache<CacheKey, Service>(maximumSize);
+    }
+
+    /**
+     * Returns a cached {@code Service} for given arguments, creating it by
+     * {@link Service#create(URL, QName, WebServiceFeature...)} if it is
+     * not cached.
+     *
+     * @param wsdlDocumentLocation {@code URL} for the WSDL document location
+     *                             for the service, may be {@code null}
+     * @param serviceName {@code QName} for the service
+     * @param features Web Service features that must be configured on
+     *        the service. If the provider doesn't understand a feature,
+     *        it must throw a WebServiceException.
+     * @return Service instance, shared with the other callers of this
+     *         method with the same arguments
+     * @throws WebServiceException If any error in creation of the
+     *                    specified service.
+     * @throws NullPointerException If the {@code null} {@code serviceName}
+     *                    is given
+     */
+    public Service getService(URL wsdlDocumentLocation, QName serviceName, WebServiceFeature... features) {
+        if (serviceName == null) {
+            throw new NullPointerException("serviceName");
+        }
+        // URL.equals resolves host names, the external form is compared instead
+        CacheKey key = new CacheKey(wsdlDocumentLocation != null ? wsdlDocumentLocation.toExternalForm() : null,
+                serviceName, features);
+        Service service = cache.get(key);
+        if (service == null) {
+            Service created = features == null || features.length == 0
+                    ? Service.create(wsdlDocumentLocation, serviceName)
+                    : Service.create(wsdlDocumentLocation, serviceName, features);
+            service = cache.putIfAbsent(key, created);
+            if (service != created) {
+                // lost the race to another caller, the instance is nobody's
+                try {
+                    created.close();
+                } catch (WebServiceException ignored) {
+                    // closed nevertheless, the cached one is returned
+                }
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Removes all the cached services, the counts are kept.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of cached services.
+     *
+     * @return number of cached services
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the maximum number of cached services.
+     *
+     * @return maximum number of cached services
+     */
+    public int getMaximumSize() {
+        return cache.maximumSize();
+    }
+
+    /**
+     * Returns the number of calls of {@code getService} which found
+     * the service in the cache.
+     *
+     * @return number of hits
+     */
+    public long getHitCount() {
+        return cache.hits();
+    }
+
+    /**
+     * Returns the number of calls of {@code getService} which didn't find
+     * the service in the cache.
+     *
+     * @return number of misses
+     */
+    public long getMissCount() {
+        return cache.misses();
+    }
+
+    /**
+     * Returns the number of services evicted from the cache to keep
+     * its maximum size.
+     *
+     * @return number of evictions
+     */
+    public long getEvictionCount() {
+        return cache.evictions();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.xml.ws;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This feature asks for the asynchronous work of a {@link Service} or an
+ * {@link Endpoint} to be run on virtual threads, without sizing a pool of
+ * platform threads.
+ * <p>
+ * This feature can be used during the creation of {@link Service} instances
+ * on the client side, by {@link Service#create(java.net.URL, javax.xml.namespace.QName, WebServiceFeature...)},
+ * and of {@link Endpoint} instances on the server side, by
+ * {@link Endpoint#create(String, Object, WebServiceFeature...)} and
+ * {@link Endpoint#publish(String, Object, WebServiceFeature...)}.
+ * It is handled by these methods rather than by the JAX-WS implementation:
+ * <ul>
+ *  <li> ENABLED: the executor of the created instance is set, as by
+ *  {@code setExecutor}, to an executor starting a new virtual thread for
+ *  each task. The asynchronous callbacks of a {@code Service}, e.g.
+ *  {@link AsyncHandler}s of {@link Dispatch#invokeAsync(Object, AsyncHandler)},
+ *  or the invocations of an {@code Endpoint} are then run on virtual threads.
+ *  If virtual threads are not supported by the Java runtime, a
+ *  {@link WebServiceException} is thrown. An executor set later replaces it.
+ *  The executor of a {@code Service} is shut down by {@link Service#close()}.
+ *  <li> DISABLED: the executor is left to the JAX-WS implementation.
+ * </ul>
+ * The feature is not passed to the JAX-WS implementation.
+ *
+ * @see Service#setExecutor(java.util.concurrent.Executor)
+ * @see Endpoint#setExecutor(java.util.concurrent.Executor)
+ * @since JAX-WS 2.4
+ */
+public final class VirtualThreadsFeature extends WebServiceFeature {
+    /**
+     * Constant value identifying the VirtualThreadsFeature
+     */
+    public static final String ID = "javax.xml.ws.VirtualThreadsFeature";
+
+    /**
+     * Creates a {@code VirtualThreadsFeature}.
+     * The instance created will be enabled.
+     */
+    public VirtualThreadsFeature() {
+        this.enabled = true;
+    }
+
+    /**
+     * Creates a {@code VirtualThreadsFeature}.
+     *
+     * @param enabled specifies whether this feature should
+     * be enabled or not.
+     */
+    public VirtualThreadsFeature(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getID() {
+        return ID;
+    }
+
+    /**
+     * Tells whether the Java runtime supports virtual threads,
+     * i.e. whether this feature can be enabled.
+     *
+     * @return {@code true} if virtual threads are supported
+     */
+    public static boolean isSupported() {
+        return Factory.NEW_EXECUTOR != null;
+    }
+
+    /**
+     * Tells whether given features enable this feature, the last
+     * {@code VirtualThreadsFeature} given decides.
+     */
+    static boolean isEnabled(WebServiceFeature[] features) {
+        if (features != null) {
+            for (int i = features.length - 1; i >= 0; i--) {
+                if (features[i] instanceof VirtualThreadsFeature) {
+                    return features[i].isEnabled();
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Given features without {@code VirtualThreadsFeature}s,
+     * to be passed to the JAX-WS implementation.
+     */
+    static WebServiceFeature[] without(WebServiceFeature[] features) {
+        if (features == null) {
+            return null;
+        }
+        List<WebServiceFeature> others = new ArrayList<WebServiceFeature>(features.length);
+        for (WebServiceFeature feature : features) {
+            if (!(feature instanceof VirtualThreadsFeature)) {
+                others.add(feature);
+            }
+        }
+        return others.size() == features.length ? features : others.toArray(new WebServiceFeature[others.size()]);
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for each task.
+     *
+     * @throws WebServiceException if virtual threads are not supported
+     */
+    static ExecutorService newExecutor() {
+        if (Factory.NEW_EXECUTOR == null) {
+            throw new WebServiceException("Virtual threads are not supported by this Java runtime. ",
+                    Factory.FAILURE);
+        }
+        try {
+            return (ExecutorService) Factory.NEW_EXECUTOR.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new WebServiceException("Error creating virtual thread executor. ", e);
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor, looked up as the API is
+    // compiled for runtimes without virtual threads
+    private static final class Factory {
+        static final MethodHandle NEW_EXECUTOR;
+        static final ReflectiveOperationException FAILURE;
+
+        static {
+            MethodHandle handle = null;
+            ReflectiveOperationException failure = null;
+            try {
+                handle = MethodHandles.publicLookup().findStatic(Executors.class,
+                        "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            } catch (ReflectiveOperationException e) {
+                failure = e;
+            }
+            NEW_EXECUTOR = handle;
+            FAILURE = failure;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.xml.ws.spi;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reports a stage of the provider discovery performed by {@link FactoryFinder}:
+ * the stage name, its duration, the class loader used and the outcome.
+ * <p>
+ * Stages are logged at {@code FINE} level and, if the JDK Flight Recorder
+ * records them, committed as {@code javax.xml.ws.ProviderDiscovery} events. The event
+ * type is defined through {@code jdk.jfr.EventFactory} using reflection, so the
+ * API does not depend on {@code jdk.jfr}; on JDKs without it nothing is recorded.
+ *
+ * @see FactoryFinder#find
+ */
+final class DiscoveryEvent {
+
+    private static final Logger logger = Logger.getLogger("javax.xml.ws");
+
+    private final String stage;
+    private final String factoryId;
+    private final ClassLoader classLoader;
+    private final long start;
+    private final Object jfrEvent;
+    private boolean ended;
+
+    private DiscoveryEvent(String stage, String factoryId, ClassLoader classLoader) {
+        this.stage = stage;
+        this.factoryId = factoryId;
+        this.classLoader = classLoader;
+        this.jfrEvent = Jfr.begin();
+        this.start = System.nanoTime();
+    }
+
+    static DiscoveryEvent begin(String stage, String factoryId, ClassLoader classLoader) {
+        return new DiscoveryEvent(stage, factoryId, classLoader);
+    }
+
+    /**
+     * Ends this stage.
+     *
+     * @param provider the provider found by the stage, or {@code null}
+     */
+    void end(Object provider) {
+        report(provider != null ? "found " + provider.getClass().getName() : "not found");
+    }
+
+    /**
+     * Ends this stage, unless it has already ended.
+     *
+     * @param failure the exception the stage failed with
+     */
+    void fail(Throwable failure) {
+        if (!ended) {
+            report("failed: " + failure);
+        }
+    }
+
+    private void report(String outcome) {
+        ended = true;
+        long duration = System.nanoTime() - start;
+        Jfr.commit(jfrEvent, stage, factoryId, classLoader, outcome);
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "Provider discovery stage [{0}] for {1} with class loader {2} took {3} us: {4}",
+                    new Object[]{stage, factoryId, classLoader, duration / 1000, outcome});
+        }
+    }
+
+    /**
+     * Flight Recorder support, resolved once. The event type is registered
+     * whenever {@code jdk.jfr} is present, so a recording started later, or
+     * a recorder initialized after discovery first ran, still gets the events;
+     * no event is created while the type is disabled.
+     */
+    private static final class Jfr {
+
+        private static final String JFR = "jdk.jfr.";
+
+        // jdk.jfr.EventType#isEnabled and jdk.jfr.EventFactory#newEvent bound to the
+        // discovery event type, jdk.jfr.Event#begin, #end, #shouldCommit, #set and #commit
+        private static final MethodHandle IS_ENABLED;
+        private static final MethodHandle NEW_EVENT;
+        private static final MethodHandle BEGIN;
+        private static final MethodHandle END;
+        private static final MethodHandle SHOULD_COMMIT;
+        private static final MethodHandle SET;
+        private static final MethodHandle COMMIT;
+
+        static {
+            MethodHandle[] handles = null;
+            try {
+                handles = createEventType();
+            } catch (ClassNotFoundException e) {
+                // no jdk.jfr
+            } catch (Throwable t) {
+                logger.log(Level.FINE, "Unable to record provider discovery events", t);
+            }
+            boolean enabled = handles != null;
+            IS_ENABLED = enabled ? handles[0] : null;
+            NEW_EVENT = enabled ? handles[1] : null;
+            BEGIN = enabled ? handles[2] : null;
+            END = enabled ? handles[3] : null;
+            SHOULD_COMMIT = enabled ? handles[4] : null;
+            SET = enabled ? handles[5] : null;
+            COMMIT = enabled ? handles[6] : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static MethodHandle[] createEventType() throws Throwable {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> eventFactory = Class.forName(JFR + "EventFactory");
+            Class<?> event = Class.forName(JFR + "Event");
+            Class<?> eventType = Class.forName(JFR + "EventType");
+            Class<?> annotationElement = Class.forName(JFR + "AnnotationElement");
+            Class<?> valueDescriptor = Class.forName(JFR + "ValueDescriptor");
+
+            MethodHandle newAnnotation = lookup.findConstructor(annotationElement,
+                    MethodType.methodType(void.class, Class.class, Object.class));
+            List<Object> annotations = Arrays.asList(
+                    newAnnotation.invoke((Class<? extends Annotation>) Class.forName(JFR + "Name"),
+                            "javax.xml.ws.ProviderDiscovery"),
+                    newAnnotation.invoke((Class<? extends Annotation>) Class.forName(JFR + "Label"),
+                            "Provider Discovery"),
+                    newAnnotation.invoke((Class<? extends Annotation>) Class.forName(JFR + "Category"),
+                            new String[]{"JAX-WS"}),
+                    newAnnotation.invoke((Class<? extends Annotation>) Class.forName(JFR + "Description"),
+                            "Stage of the JAX-WS provider lookup"));
+
+            MethodHandle newField = lookup.findConstructor(valueDescriptor,
+                    MethodType.methodType(void.class, Class.class, String.class));
+            List<Object> fields = Arrays.asList(
+                    newField.invoke(String.class, "stage"),
+                    newField.invoke(String.class, "factory"),
+                    newField.invoke(String.class, "classLoader"),
+                    newField.invoke(String.class, "outcome"));
+
+            Object factory = lookup.findStatic(eventFactory, "create",
+                    MethodType.methodType(eventFactory, List.class, List.class)).invoke(annotations, fields);
+
+            Object type = lookup.findVirtual(eventFactory, "getEventType",
+                    MethodType.methodType(eventType)).invoke(factory);
+
+            return new MethodHandle[]{
+                    lookup.findVirtual(eventType, "isEnabled", MethodType.methodType(boolean.class)).bindTo(type),
+                    lookup.findVirtual(eventFactory, "newEvent", MethodType.methodType(event)).bindTo(factory),
+                    lookup.findVirtual(event, "begin", MethodType.methodType(void.class)),
+                    lookup.findVirtual(event, "end", MethodType.methodType(void.class)),
+                    lookup.findVirtual(event, "shouldCommit", MethodType.methodType(boolean.class)),
+                    lookup.findVirtual(event, "set", MethodType.methodType(void.class, int.class, Object.class)),
+                    lookup.findVirtual(event, "commit", MethodType.methodType(void.class))
+            };
+        }
+
+        static Object begin() {
+            if (NEW_EVENT == null) {
+                return null;
+            }
+            try {
+                if (!(boolean) IS_ENABLED.invoke()) {
+                    return null;
+                }
+                Object event = NEW_EVENT.invoke();
+                BEGIN.invoke(event);
+                return event;
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        static void commit(Object event, String stage, String factoryId, ClassLoader classLoader, String outcome) {
+            if (event == null) {
+                return;
+            }
+            try {
+                END.invoke(event);
+                if ((boolean) SHOULD_COMMIT.invoke(event)) {
+                    SET.invoke(event, 0, stage);
+                    SET.invoke(event, 1, factoryId);
+                    SET.invoke(event, 2, String.valueOf(classLoader));
+                    SET.invoke(event, 3, outcome);
+                    COMMIT.invoke(event);
+                }
+            } catch (Throwable ignored) {
+                // recording is best effort
+            }
+        }
+    }
+}
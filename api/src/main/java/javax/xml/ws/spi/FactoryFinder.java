@@ -42,10 +42,21 @@ package javax.xml.ws.spi;
 
 import java.io.*;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.ws.WebServiceException;
@@ -85,32 +96,206 @@ class FactoryFinder {
     @SuppressWarnings("unchecked")
     static <T> T find(Class<T> factoryClass, String fallbackClassName) {
         ClassLoader classLoader = ServiceLoaderUtil.contextClassLoader(EXCEPTION_HANDLER);
+        String factoryId = factoryClass.getName();
 
-        T provider = ServiceLoaderUtil.firstByServiceLoader(factoryClass, logger, EXCEPTION_HANDLER);
-        if (provider != null) return provider;
+        // fail fast if the same lookup failed recently; each caller gets its
+        // own exception, caused by the one the lookup failed with
+        WebServiceException miss = recentMiss(factoryId, classLoader);
+        if (miss != null) {
+            throw new WebServiceException(miss.getMessage(), miss);
+        }
 
-        String factoryId = factoryClass.getName();
+        DiscoveryEvent event = null;
+        try {
+            // the build-time index, if present, stands in for the META-INF/services scan
+            T provider;
+            String indexedClassName = fromIndex(factoryId, classLoader);
+            if (indexedClassName == null) {
+                event = DiscoveryEvent.begin("ServiceLoader", factoryId, classLoader);
+                provider = ServiceLoaderUtil.firstByServiceLoader(factoryClass, logger, EXCEPTION_HANDLER);
+            } else {
+                event = DiscoveryEvent.begin("index", factoryId, classLoader);
+                provider = indexedClassName.isEmpty() ? null : factoryClass.cast(ServiceLoaderUtil.newInstance(
+                        indexedClassName, fallbackClassName, classLoader, EXCEPTION_HANDLER));
+            }
+            event.end(provider);
+            if (provider != null) return provider;
+
+            // try to read from $java.home/lib/jaxws.properties
+            event = DiscoveryEvent.begin("jaxws.properties", factoryId, classLoader);
+            provider = (T) fromJDKProperties(factoryId, fallbackClassName, classLoader);
+            event.end(provider);
+            if (provider != null) return provider;
+
+            // Use the system property
+            event = DiscoveryEvent.begin("system property", factoryId, classLoader);
+            provider = (T) fromSystemProperty(factoryId, fallbackClassName, classLoader);
+            event.end(provider);
+            if (provider != null) return provider;
 
-        // try to read from $java.home/lib/jaxws.properties
-        provider = (T) fromJDKProperties(factoryId, fallbackClassName, classLoader);
-        if (provider != null) return provider;
+            // handling Glassfish (platform specific default)
+            if (isOsgi()) {
+                event = DiscoveryEvent.begin("OSGi", factoryId, classLoader);
+                provider = (T) lookupUsingOSGiServiceLoader(factoryId);
+                event.end(provider);
+                return provider;
+            }
 
-        // Use the system property
-        provider = (T) fromSystemProperty(factoryId, fallbackClassName, classLoader);
-        if (provider != null) return provider;
+            event = DiscoveryEvent.begin("fallback", factoryId, classLoader);
+            if (fallbackClassName == null) {
+                throw new WebServiceException(
+                    "Provider for " + factoryId + " cannot be found", null);
+            }
 
-        // handling Glassfish (platform specific default)
-        if (isOsgi()) {
-            return (T) lookupUsingOSGiServiceLoader(factoryId);
+            provider = (T) ServiceLoaderUtil.newInstance(fallbackClassName,
+                    fallbackClassName, classLoader, EXCEPTION_HANDLER);
+            event.end(provider);
+            return provider;
+        } catch (RuntimeException e) {
+            if (event != null) {
+                event.fail(e);
+            }
+            if (e instanceof WebServiceException) {
+                recordMiss(factoryId, classLoader, (WebServiceException) e);
+            }
+            throw e;
         }
+    }
 
-        if (fallbackClassName == null) {
-            throw new WebServiceException(
-                "Provider for " + factoryId + " cannot be found", null);
+    /**
+     * How long a failed lookup is remembered; during that time the lookup
+     * is not repeated and a new exception caused by the failure is thrown instead.
+     */
+    private static final long MISS_TTL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    // failed lookups, keyed by class loader and factory name
+    private static final Map<ClassLoader, Map<String, Miss>> MISSES =
+            new WeakHashMap<ClassLoader, Map<String, Miss>>();
+
+    private static final class Miss {
+
+        final WebServiceException failure;
+        final long expires;
+
+        Miss(WebServiceException failure) {
+            this.failure = failure;
+            this.expires = System.nanoTime() + MISS_TTL_NANOS;
+        }
+    }
+
+    private static WebServiceException recentMiss(String factoryId, ClassLoader classLoader) {
+        synchronized (MISSES) {
+            Map<String, Miss> misses = MISSES.get(classLoader);
+            Miss miss = misses != null ? misses.get(factoryId) : null;
+            if (miss == null) {
+                return null;
+            }
+            if (System.nanoTime() - miss.expires >= 0) {
+                misses.remove(factoryId);
+                return null;
+            }
+            return miss.failure;
+        }
+    }
+
+    private static void recordMiss(String factoryId, ClassLoader classLoader, WebServiceException failure) {
+        synchronized (MISSES) {
+            Map<String, Miss> misses = MISSES.get(classLoader);
+            if (misses == null) {
+                misses = new HashMap<String, Miss>();
+                MISSES.put(classLoader, misses);
+            }
+            misses.put(factoryId, new Miss(failure));
+        }
+    }
+
+    /**
+     * Forgets the failed lookups performed with the given class loader
+     * and the provider index read from it.
+     */
+    static void invalidate(ClassLoader classLoader) {
+        synchronized (MISSES) {
+            MISSES.remove(classLoader);
+        }
+        synchronized (INDEXES) {
+            INDEXES.remove(classLoader);
+        }
+    }
+
+    /**
+     * Forgets all the failed lookups, the provider indexes read and the
+     * parsed {@code jaxws.properties}.
+     */
+    static void invalidateAll() {
+        synchronized (MISSES) {
+            MISSES.clear();
+        }
+        synchronized (INDEXES) {
+            INDEXES.clear();
+        }
+        JDK_PROPERTIES.clear();
+    }
+
+    /**
+     * Returns the thread context class loader the factory lookup is
+     * performed with.
+     *
+     * @exception WebServiceException if the class loader cannot be obtained
+     */
+    static ClassLoader contextClassLoader() {
+        return ServiceLoaderUtil.contextClassLoader(EXCEPTION_HANDLER);
+    }
+
+    /**
+     * Name of the provider index resource. The index is a {@link Properties}
+     * file generated at build time, which maps a factory name to the
+     * implementation class that is registered for it in
+     * {@code META-INF/services}, or to an empty value if there is none.
+     * It is written by {@link ProviderIndexGenerator}.
+     */
+    static final String INDEX_RESOURCE = "META-INF/jaxws.index";
+
+    // provider indexes, keyed by the class loader they were read from;
+    // an empty Properties stands for a missing index
+    private static final Map<ClassLoader, Properties> INDEXES =
+            new WeakHashMap<ClassLoader, Properties>();
+
+    /**
+     * Returns the implementation class name the provider index of the given
+     * class loader lists for {@code factoryId}, an empty string if the index
+     * lists no implementation, or {@code null} if the factory is not indexed.
+     */
+    private static String fromIndex(String factoryId, ClassLoader classLoader) {
+        Properties index;
+        synchronized (INDEXES) {
+            index = INDEXES.get(classLoader);
         }
+        if (index == null) {
+            index = loadIndex(classLoader);
+            synchronized (INDEXES) {
+                INDEXES.put(classLoader, index);
+            }
+        }
+        String className = index.getProperty(factoryId);
+        return className != null ? className.trim() : null;
+    }
 
-        return (T) ServiceLoaderUtil.newInstance(fallbackClassName,
-                fallbackClassName, classLoader, EXCEPTION_HANDLER);
+    private static Properties loadIndex(ClassLoader classLoader) {
+        Properties index = new Properties();
+        URL url = classLoader == null
+                ? ClassLoader.getSystemResource(INDEX_RESOURCE)
+                : classLoader.getResource(INDEX_RESOURCE);
+        if (url != null) {
+            logger.log(Level.FINE, "Using provider index {0}", url);
+            try (InputStream inStream = url.openStream()) {
+                index.load(inStream);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Error reading JAX-WS provider index from [" + url +
+                        "]. Check it is accessible and has correct format.", e);
+                index.clear();
+            }
+        }
+        return index;
     }
 
     private static Object fromSystemProperty(String factoryId,
@@ -130,54 +315,147 @@ class FactoryFinder {
     private static Object fromJDKProperties(String factoryId,
                                             String fallbackClassName,
                                             ClassLoader classLoader) {
-        Path path = null;
+        String javaHome = System.getProperty("java.home");
+        JDKProperties jdkProperties = null;
         try {
-            String JAVA_HOME = System.getProperty("java.home");
-            path = Paths.get(JAVA_HOME, "conf", "jaxws.properties");
-
-            // to ensure backwards compatibility
-            if (!Files.exists(path)) {
-                path = Paths.get(JAVA_HOME, "lib", "jaxws.properties");
-            }
-
-            if (Files.exists(path)) {
-                Properties props = new Properties();
-                try (InputStream inStream = Files.newInputStream(path)) {
-                    props.load(inStream);
-                }
-                String factoryClassName = props.getProperty(factoryId);
+            jdkProperties = jdkProperties(javaHome);
+            if (jdkProperties.properties != null) {
+                String factoryClassName = jdkProperties.properties.getProperty(factoryId);
                 return ServiceLoaderUtil.newInstance(factoryClassName,
                         fallbackClassName, classLoader, EXCEPTION_HANDLER);
             }
         } catch (Exception ignored) {
-            logger.log(Level.SEVERE, "Error reading JAX-WS configuration from ["  + path +
+            logger.log(Level.SEVERE, "Error reading JAX-WS configuration from ["  +
+                    (jdkProperties != null ? jdkProperties.path : javaHome) +
                     "] file. Check it is accessible and has correct format.", ignored);
         }
         return null;
     }
 
+    // parsed jaxws.properties, keyed by the java.home they were looked up in
+    private static final ConcurrentMap<String, JDKProperties> JDK_PROPERTIES =
+            new ConcurrentHashMap<String, JDKProperties>();
+
+    /**
+     * Returns the parsed {@code jaxws.properties} of the given Java installation.
+     * The file is only parsed again if its last modification time changes,
+     * or if it is moved or removed. A missing file is probed once: creating
+     * it is only noticed after {@link #invalidateAll()} or for another
+     * {@code java.home}.
+     */
+    private static JDKProperties jdkProperties(String javaHome) throws IOException {
+        JDKProperties jdkProperties = JDK_PROPERTIES.get(javaHome);
+        if (jdkProperties == null || jdkProperties.isStale()) {
+            jdkProperties = JDKProperties.load(javaHome);
+            JDK_PROPERTIES.put(javaHome, jdkProperties);
+        }
+        return jdkProperties;
+    }
+
+    /**
+     * Snapshot of a {@code jaxws.properties} file; {@code path} and
+     * {@code properties} are {@code null} if there is no such file.
+     */
+    private static final class JDKProperties {
+
+        final String javaHome;
+        final Path path;
+        final FileTime lastModified;
+        final Properties properties;
+
+        private JDKProperties(String javaHome, Path path, FileTime lastModified, Properties properties) {
+            this.javaHome = javaHome;
+            this.path = path;
+            this.lastModified = lastModified;
+            this.properties = properties;
+        }
+
+        static JDKProperties load(String javaHome) throws IOException {
+            Path path = locate(javaHome);
+            if (path == null) {
+                return new JDKProperties(javaHome, null, null, null);
+            }
+
+            FileTime lastModified = Files.getLastModifiedTime(path);
+            Properties props = new Properties();
+            try (InputStream inStream = Files.newInputStream(path)) {
+                props.load(inStream);
+            } catch (IOException e) {
+                throw new IOException("Error reading [" + path + "]", e);
+            }
+            return new JDKProperties(javaHome, path, lastModified, props);
+        }
+
+        // the jaxws.properties file in effect, null if there is none
+        private static Path locate(String javaHome) {
+            Path path = Paths.get(javaHome, "conf", "jaxws.properties");
+
+            // to ensure backwards compatibility
+            if (!Files.exists(path)) {
+                path = Paths.get(javaHome, "lib", "jaxws.properties");
+            }
+            return Files.exists(path) ? path : null;
+        }
+
+        boolean isStale() {
+            if (path == null) {
+                // no file, remembered until invalidateAll()
+                return false;
+            }
+            Path current = locate(javaHome);
+            if (current == null) {
+                // removed since
+                return true;
+            }
+            if (!path.equals(current)) {
+                return true;
+            }
+            try {
+                return !lastModified.equals(Files.getLastModifiedTime(path));
+            } catch (IOException e) {
+                // removed or no longer accessible, look it up again
+                return true;
+            }
+        }
+    }
+
     private static final String OSGI_SERVICE_LOADER_CLASS_NAME = "org.glassfish.hk2.osgiresourcelocator.ServiceLoader";
 
     private static boolean isOsgi() {
-        try {
-            Class.forName(OSGI_SERVICE_LOADER_CLASS_NAME);
-            return true;
-        } catch (ClassNotFoundException ignored) {
-        }
-        return false;
+        return OsgiServiceLoader.LOOKUP_PROVIDER_INSTANCES != null;
     }
 
     private static Object lookupUsingOSGiServiceLoader(String factoryId) {
         try {
             // Use reflection to avoid having any dependendcy on ServiceLoader class
             Class serviceClass = Class.forName(factoryId);
-            Class[] args = new Class[]{serviceClass};
-            Class target = Class.forName(OSGI_SERVICE_LOADER_CLASS_NAME);
-            java.lang.reflect.Method m = target.getMethod("lookupProviderInstances", Class.class);
-            java.util.Iterator iter = ((Iterable) m.invoke(null, (Object[]) args)).iterator();
+            java.util.Iterator iter = ((Iterable) OsgiServiceLoader.LOOKUP_PROVIDER_INSTANCES.invoke(serviceClass)).iterator();
             return iter.hasNext() ? iter.next() : null;
-        } catch (Exception ignored) {
-            // log and continue
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable ignored) {
+            // log and continue; Throwable as MethodHandle.invoke declares it
+            return null;
+        }
+    }
+
+    /**
+     * Resolves the OSGi service loader once, on first use; the handle is
+     * {@code null} outside of OSGi environments.
+     */
+    private static final class OsgiServiceLoader {
+
+        static final MethodHandle LOOKUP_PROVIDER_INSTANCES = lookupProviderInstances();
+
+        private static MethodHandle lookupProviderInstances() {
+            try {
+                Class target = Class.forName(OSGI_SERVICE_LOADER_CLASS_NAME);
+                return MethodHandles.publicLookup().findStatic(target, "lookupProviderInstances",
+                        MethodType.methodType(Iterable.class, Class.class));
+            } catch (ClassNotFoundException ignored) {
+            } catch (ReflectiveOperationException e) {
+                logger.log(Level.FINE, "Unable to use OSGi service loader", e);
+            }
             return null;
         }
     }
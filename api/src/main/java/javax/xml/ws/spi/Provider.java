@@ -40,9 +40,22 @@
 
 package javax.xml.ws.spi;
 
+import java.io.StringReader;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import javax.xml.namespace.QName;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.ws.*;
 import javax.xml.ws.wsaddressing.W3CEndpointReference;
 
@@ -64,6 +77,17 @@ public abstract class Provider {
     private static final String DEFAULT_JAXWSPROVIDER =
             "com.sun"+".xml.internal.ws.spi.ProviderImpl";
 
+    /**
+     * Providers resolved by {@link #provider()}, keyed by the thread context
+     * class loader they were resolved for, weakly referenced by {@link LoaderKey}.
+     * The provider class is typically defined by that very loader, so the
+     * values are only softly referenced to let the loader be collected.
+     * Reads take no lock.
+     */
+    private static final ConcurrentHashMap<Object, SoftReference<Provider>> PROVIDERS =
+            new ConcurrentHashMap<Object, SoftReference<Provider>>();
+    private static final ReferenceQueue<ClassLoader> COLLECTED_LOADERS = new ReferenceQueue<ClassLoader>();
+
     /**
      * Creates a new instance of Provider
      */
@@ -80,6 +104,10 @@ public abstract class Provider {
      *  <li> Use the service-provider loading facilities, defined by the {@link java.util.ServiceLoader} class,
      *  to attempt to locate and load an implementation of {@link javax.xml.ws.spi.Provider} service using
      *  the {@linkplain java.util.ServiceLoader#load(java.lang.Class) default loading mechanism}.
+     *  If the resource {@code META-INF/jaxws.index} is visible to the thread context class loader
+     *  and lists the key {@code javax.xml.ws.spi.Provider}, the implementation class it names is
+     *  used instead and the {@code META-INF/services} resources are not scanned; an empty value
+     *  indicates that no implementation is registered.
      *  <li>Use the configuration file "jaxws.properties". The file is in standard
      *  {@link java.util.Properties} format and typically located in the
      *  {@code conf} directory of the Java installation. It contains the fully qualified
@@ -88,17 +116,219 @@ public abstract class Provider {
      *  is defined, then its value is used as the name of the implementation class.
      *  <li> Finally, a platform default implementation is used.
      * </ul>
+     * <p>
+     * The provider located this way is cached per thread context class loader,
+     * so subsequent invocations made with the same context class loader
+     * return the same provider object without repeating the lookup.
+     * If the lookup fails, the failure is rethrown for a few seconds without
+     * repeating the lookup.
+     * Use {@link #invalidate(ClassLoader)} or {@link #invalidateAll()} to
+     * force a new lookup, for example after the configuration has changed.
      *
      * @return provider object
      */
     public static Provider provider() {
+        ClassLoader classLoader = FactoryFinder.contextClassLoader();
+        Provider provider = cachedProvider(classLoader);
+        if (provider != null) {
+            return provider;
+        }
+
         try {
-            return FactoryFinder.find(Provider.class, DEFAULT_JAXWSPROVIDER);
+            provider = FactoryFinder.find(Provider.class, DEFAULT_JAXWSPROVIDER);
         } catch (WebServiceException ex) {
             throw ex;
         } catch (Exception ex) {
             throw new WebServiceException("Unable to createEndpointReference Provider", ex);
         }
+
+        expungeCollectedLoaders();
+        SoftReference<Provider> ref = new SoftReference<Provider>(provider);
+        LoaderKey key = new LoaderKey(classLoader, COLLECTED_LOADERS);
+        while (true) {
+            // another thread may have resolved the provider meanwhile, keep the first one
+            SoftReference<Provider> cached = PROVIDERS.putIfAbsent(key, ref);
+            if (cached == null) {
+                return provider;
+            }
+            Provider cachedProvider = cached.get();
+            if (cachedProvider != null) {
+                return cachedProvider;
+            }
+            if (PROVIDERS.replace(key, cached, ref)) {
+                return provider;
+            }
+        }
+    }
+
+    /**
+     * Discards the provider cached by {@link #provider()} for the given
+     * thread context class loader, or the failure of its lookup. The next
+     * invocation of {@link #provider()} made with this context class loader
+     * locates the provider again.
+     *
+     * @param classLoader the thread context class loader the provider was
+     *        located for, {@code null} stands for the bootstrap class loader
+     *
+     * @since JAX-WS 2.4
+     */
+    public static void invalidate(ClassLoader classLoader) {
+        PROVIDERS.remove(new Lookup(classLoader));
+        FactoryFinder.invalidate(classLoader);
+    }
+
+    /**
+     * Discards all the providers cached by {@link #provider()}
+     * and all the remembered lookup failures, including a missing
+     * {@code jaxws.properties} file.
+     *
+     * @since JAX-WS 2.4
+     */
+    public static void invalidateAll() {
+        PROVIDERS.clear();
+        FactoryFinder.invalidateAll();
+    }
+
+    private static final String PREWARM_EPR =
+            "<EndpointReference xmlns='http://www.w3.org/2005/08/addressing'>"
+            + "<Address>http://www.w3.org/2005/08/addressing/anonymous</Address>"
+            + "</EndpointReference>";
+
+    /**
+     * Locates the provider and lets it perform its expensive first-use
+     * initialization in the background, typically at application start,
+     * so that the first {@code Service} or {@code Endpoint} created on the
+     * request path does not pay for it.
+     * <p>
+     * The provider is located as by {@link #provider()} with the thread
+     * context class loader of the calling thread and is then cached for it.
+     * Once located, its {@link #warmUp()} method is invoked, then a
+     * {@link W3CEndpointReference} is read from and written to XML: both
+     * the XML streaming classes it uses and the JAXB context it falls back
+     * to for DOM sources and results are created. All these steps run as a
+     * single task submitted to the given executor.
+     *
+     * @param executor the executor to run the initialization with
+     * @return a {@code Future} completing with the located provider, or failing
+     *         with the {@code WebServiceException} the lookup or the
+     *         initialization failed with
+     *
+     * @throws NullPointerException if {@code executor} is {@code null}
+     *
+     * @since JAX-WS 2.4
+     */
+    public static Future<Provider> prewarm(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        final ClassLoader classLoader = FactoryFinder.contextClassLoader();
+        FutureTask<Provider> task = new FutureTask<Provider>(new Callable<Provider>() {
+            @Override
+            public Provider call() {
+                Thread thread = Thread.currentThread();
+                ClassLoader original = thread.getContextClassLoader();
+                thread.setContextClassLoader(classLoader);
+                try {
+                    Provider provider = provider();
+                    provider.warmUp();
+                    // the streaming codec, then the JAXBContext shared by all
+                    // W3CEndpointReference instances through a DOM round trip
+                    W3CEndpointReference epr =
+                            new W3CEndpointReference(new StreamSource(new StringReader(PREWARM_EPR)));
+                    DOMResult result = new DOMResult();
+                    epr.writeTo(result);
+                    new W3CEndpointReference(new DOMSource(result.getNode()));
+                    return provider;
+                } finally {
+                    thread.setContextClassLoader(original);
+                }
+            }
+        });
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Performs the expensive first-use initialization of this provider, for
+     * example preparing the machinery behind {@code ServiceDelegate} and
+     * {@code Endpoint} instances. Invoked by {@link #prewarm(Executor)}.
+     * <p>
+     * The default implementation does nothing; implementations are encouraged
+     * to override it.
+     *
+     * @throws WebServiceException if the initialization fails
+     *
+     * @since JAX-WS 2.4
+     */
+    protected void warmUp() {
+    }
+
+    private static Provider cachedProvider(ClassLoader classLoader) {
+        SoftReference<Provider> ref = PROVIDERS.get(new Lookup(classLoader));
+        return ref != null ? ref.get() : null;
+    }
+
+    private static void expungeCollectedLoaders() {
+        for (Reference<? extends ClassLoader> key = COLLECTED_LOADERS.poll(); key != null;
+             key = COLLECTED_LOADERS.poll()) {
+            PROVIDERS.remove(key);
+        }
+    }
+
+    // weak class loader key compared by identity, null stands for the bootstrap loader
+    private static final class LoaderKey extends WeakReference<ClassLoader> {
+        private final int hash;
+        private final boolean bootstrap;
+
+        LoaderKey(ClassLoader classLoader, ReferenceQueue<ClassLoader> queue) {
+            super(classLoader, queue);
+            this.hash = System.identityHashCode(classLoader);
+            this.bootstrap = classLoader == null;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof LoaderKey)) {
+                return false;
+            }
+            LoaderKey other = (LoaderKey) obj;
+            if (bootstrap || other.bootstrap) {
+                return bootstrap && other.bootstrap;
+            }
+            ClassLoader classLoader = get();
+            return classLoader != null && classLoader == other.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // key for reading the cache, equal to the LoaderKey of the same class loader
+    private static final class Lookup {
+        private final ClassLoader classLoader;
+
+        Lookup(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof LoaderKey)) {
+                return false;
+            }
+            LoaderKey key = (LoaderKey) obj;
+            return classLoader == null ? key.bootstrap : classLoader == key.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(classLoader);
+        }
     }
 
     /**
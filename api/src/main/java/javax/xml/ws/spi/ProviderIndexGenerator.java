@@ -0,0 +1,123 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.xml.ws.spi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.Properties;
+
+/**
+ * Writes the provider index read by {@link FactoryFinder} in place of the
+ * {@code META-INF/services} scan. To be run at build time with the class path
+ * of the application, e.g.
+ * <pre>
+ * java -cp jaxws-api.jar:&lt;application class path&gt; javax.xml.ws.spi.ProviderIndexGenerator target/classes/META-INF/jaxws.index
+ * </pre>
+ * For each indexed factory the index lists the implementation the
+ * {@link java.util.ServiceLoader} would return first, or an empty value if
+ * there is none. The index has to be generated again whenever the providers
+ * registered on the class path change.
+ */
+final class ProviderIndexGenerator {
+
+    // factories looked up through FactoryFinder
+    private static final String[] FACTORY_IDS = {Provider.class.getName()};
+
+    private ProviderIndexGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java javax.xml.ws.spi.ProviderIndexGenerator <output file>");
+            System.exit(1);
+        }
+        Path output = Paths.get(args[0]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        Properties index = index(Thread.currentThread().getContextClassLoader());
+        try (OutputStream out = Files.newOutputStream(output)) {
+            index.store(out, "JAX-WS provider index, generated by " + ProviderIndexGenerator.class.getName());
+        }
+    }
+
+    static Properties index(ClassLoader classLoader) throws IOException {
+        Properties index = new Properties();
+        for (String factoryId : FACTORY_IDS) {
+            String className = firstRegistered(factoryId, classLoader);
+            index.setProperty(factoryId, className != null ? className : "");
+        }
+        return index;
+    }
+
+    // the first implementation listed in META-INF/services, in ServiceLoader order
+    private static String firstRegistered(String factoryId, ClassLoader classLoader) throws IOException {
+        String name = "META-INF/services/" + factoryId;
+        Enumeration<URL> resources = classLoader == null
+                ? ClassLoader.getSystemResources(name)
+                : classLoader.getResources(name);
+        while (resources.hasMoreElements()) {
+            try (InputStream in = resources.nextElement().openStream();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    int comment = line.indexOf('#');
+                    if (comment >= 0) {
+                        line = line.substring(0, comment);
+                    }
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        return line;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -58,13 +58,16 @@ import javax.xml.ws.WebServiceException;
  * Every {@code Service} object has its own delegate, created using
  * the {@link javax.xml.ws.spi.Provider#createServiceDelegate} method. A {@code Service}
  * object delegates all of its instance methods to its delegate.
+ * <p>
+ * A delegate is closed when its {@code Service} is closed, see
+ * {@link #close()}.
  *
  * @see javax.xml.ws.Service
  * @see javax.xml.ws.spi.Provider
  *
  * @since 1.6, JAX-WS 2.0
  */
-public abstract class ServiceDelegate {
+public abstract class ServiceDelegate implements AutoCloseable {
 
     /**
      * Default constructor.
@@ -284,6 +287,92 @@ public abstract class ServiceDelegate {
     public abstract <T> T getPort(Class<T> serviceEndpointInterface,
             WebServiceFeature... features);
 
+    /**
+     * The {@code getSharedPort} method returns a proxy which may be
+     * shared: an implementation may cache the proxies it creates, keyed by
+     * the {@code portName}, the {@code serviceEndpointInterface} and the
+     * {@code features}, and return the same proxy to all the calls with
+     * equal arguments, possibly from multiple threads.
+     * <p>
+     * To make sharing safe, the contexts of a shared proxy MUST be scoped to
+     * a single invocation:
+     * <ul>
+     *   <li>the {@link javax.xml.ws.BindingProvider#getRequestContext()
+     *       request context} returned to a thread is the one of the next
+     *       invocation the thread makes, it is not seen by other threads. It
+     *       starts as a copy of the request context the proxy was created
+     *       with, and each invocation resets it to that copy: properties set
+     *       for an invocation don't apply to the following ones, even when
+     *       the thread is pooled and runs another task;
+     *   <li>the {@link javax.xml.ws.BindingProvider#getResponseContext()
+     *       response context} returned to a thread is the one of the last
+     *       invocation the thread made, it is replaced by the next invocation.
+     *       It is only meaningful to the code which made that invocation,
+     *       read on the same thread before any other invocation.
+     * </ul>
+     * A pooled thread may therefore see a request context set up, but not
+     * used, by a previous task: the request context should be set up right
+     * before the invocation it is meant for. The binding of a shared proxy,
+     * including its handler chain, is shared and should not be reconfigured
+     * by the client.
+     * <p>
+     * Caching is opt-in: {@code getPort} still returns a new proxy on every
+     * call. The default implementation of this method does not cache, it
+     * returns {@link #getPort(QName, Class, WebServiceFeature...)}, a proxy
+     * not shared, which satisfies the contract trivially.
+     *
+     * @param <T> Service endpoint interface
+     * @param portName  Qualified name of the service endpoint in
+     *                  the WSDL service description
+     * @param serviceEndpointInterface Service endpoint interface
+     *                  supported by the dynamic proxy or instance
+     * @param features  A list of WebServiceFeatures to configure on the
+     *                proxy.  Supported features not in the {@code features
+     *                } parameter will have their default values.
+     * @return Object Proxy instance that
+     *                supports the specified service endpoint
+     *                interface, possibly shared
+     * @throws WebServiceException In the cases listed by
+     *                {@link #getPort(QName, Class, WebServiceFeature...)}
+     *
+     * @see #getPort(QName, Class, WebServiceFeature...)
+     *
+     * @since JAX-WS 2.4
+     **/
+    public <T> T getSharedPort(QName portName,
+            Class<T> serviceEndpointInterface, WebServiceFeature... features) {
+        return getPort(portName, serviceEndpointInterface, features);
+    }
+
+    /**
+     * The {@code getSharedPort} method returns a proxy which may be
+     * shared, the runtime selecting the port as by
+     * {@link #getPort(Class, WebServiceFeature...)}. See
+     * {@link #getSharedPort(QName, Class, WebServiceFeature...)} for the
+     * contract of shared proxies.
+     * <p>
+     * The default implementation of this method does not cache, it
+     * returns {@link #getPort(Class, WebServiceFeature...)}.
+     *
+     * @param <T> Service endpoint interface
+     * @param serviceEndpointInterface Service endpoint interface
+     * @param features  An array of {@code WebServiceFeatures} to configure on the
+     *                proxy.  Supported features not in the {@code features
+     *                } parameter will have their default values.
+     * @return Object instance that supports the
+     *                  specified service endpoint interface, possibly shared
+     * @throws WebServiceException In the cases listed by
+     *                {@link #getPort(Class, WebServiceFeature...)}
+     *
+     * @see #getSharedPort(QName, Class, WebServiceFeature...)
+     *
+     * @since JAX-WS 2.4
+     **/
+    public <T> T getSharedPort(Class<T> serviceEndpointInterface,
+            WebServiceFeature... features) {
+        return getPort(serviceEndpointInterface, features);
+    }
+
 
     /**
      * Creates a new port for the service. Ports created in this way contain
@@ -649,4 +738,28 @@ public abstract class ServiceDelegate {
      **/
     public abstract void setExecutor(java.util.concurrent.Executor executor);
 
+    /**
+     * Closes this delegate, releasing the resources it holds, e.g. pooled
+     * connections, executors created by the implementation or cached
+     * WSDL models.
+     * <p>
+     * The resources used by the proxies and {@code Dispatch} instances
+     * created by this delegate MUST be released as well, when this method
+     * returns rather than when they are garbage collected. Invoking them
+     * once the delegate is closed may fail with a {@link WebServiceException}.
+     * Closing a closed delegate has no effect.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @throws WebServiceException If an error occurs while releasing
+     *         the resources; the delegate is closed nevertheless.
+     *
+     * @see javax.xml.ws.Service#close()
+     *
+     * @since JAX-WS 2.4
+     **/
+    @Override
+    public void close() {
+    }
+
 }
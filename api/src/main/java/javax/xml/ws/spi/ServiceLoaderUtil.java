@@ -40,7 +40,16 @@
 
 package javax.xml.ws.spi;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -55,12 +64,30 @@ class ServiceLoaderUtil {
     static <P, T extends Exception> P firstByServiceLoader(Class<P> spiClass,
                                                            Logger logger,
                                                            ExceptionHandler<T> handler) throws T {
+        return firstByServiceLoader(spiClass, null, logger, handler);
+    }
+
+    // Returns the first provider whose type is accepted by the selector (null accepts any).
+    // Built from the jdk9 source tree, the candidate types are inspected through
+    // ServiceLoader.stream() before instantiation, so candidates not selected are never
+    // constructed; otherwise each candidate is constructed by the iterator, then inspected.
+    static <P, T extends Exception> P firstByServiceLoader(Class<P> spiClass,
+                                                           Predicate<Class<?>> selector,
+                                                           Logger logger,
+                                                           ExceptionHandler<T> handler) throws T {
         logger.log(Level.FINE, "Using java.util.ServiceLoader to find {0}", spiClass.getName());
         // service discovery
         try {
             ServiceLoader<P> serviceLoader = ServiceLoader.load(spiClass);
 
+            if (STREAMS != null) {
+                return STREAMS.first(serviceLoader, selector, logger);
+            }
             for (P impl : serviceLoader) {
+                if (selector != null && !selector.test(impl.getClass())) {
+                    logger.log(Level.FINE, "Skipping service provider [{0}]", impl.getClass().getName());
+                    continue;
+                }
                 logger.fine("ServiceProvider loading Facility used; returning object [" +
                         impl.getClass().getName() + "]");
 
@@ -72,7 +99,28 @@ class ServiceLoaderUtil {
         return null;
     }
 
-    static void checkPackageAccess(String className) {
+    /**
+     * Selection of a provider among the candidates of a {@code ServiceLoader}.
+     */
+    interface Selection {
+
+        <P> P first(ServiceLoader<P> serviceLoader, Predicate<Class<?>> selector, Logger logger);
+    }
+
+    // the ServiceLoader.stream() based selection, only compiled from the jdk9 source tree
+    private static final Selection STREAMS = streams();
+
+    private static Selection streams() {
+        try {
+            return (Selection) Class.forName("javax.xml.ws.spi.ServiceLoaderStreams")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    // returns whether a security manager is installed, i.e. whether the access was checked
+    static boolean checkPackageAccess(String className) {
         // make sure that the current thread has an access to the package of the given name.
         SecurityManager s = System.getSecurityManager();
         if (s != null) {
@@ -81,6 +129,7 @@ class ServiceLoaderUtil {
                 s.checkPackageAccess(className.substring(0, i));
             }
         }
+        return s != null;
     }
 
     static Class nullSafeLoadClass(String className, ClassLoader classLoader) throws ClassNotFoundException {
@@ -98,20 +147,67 @@ class ServiceLoaderUtil {
                                                     String defaultImplClassName, ClassLoader classLoader,
                                                     final ExceptionHandler<T> handler) throws T {
         try {
-            return safeLoadClass(className, defaultImplClassName, classLoader).newInstance();
+            Class<?> cls = safeLoadClass(className, defaultImplClassName, classLoader);
+            MethodHandle constructor = CONSTRUCTORS.get(cls);
+            if (constructor == null) {
+                // let the reflective call report the problem
+                return cls.getDeclaredConstructor().newInstance();
+            }
+            return (Object) constructor.invokeExact();
         } catch (ClassNotFoundException x) {
             throw handler.createException(x, "Provider " + className + " not found");
-        } catch (Exception x) {
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable x) {
             throw handler.createException(x, "Provider " + className + " could not be instantiated: " + x);
         }
     }
 
+    // classes loaded by newInstance, keyed by class loader and class name; classes
+    // are only weakly referenced as they (through their loader) reference the key
+    private static final Map<ClassLoader, ConcurrentMap<String, WeakReference<Class<?>>>> CLASSES =
+            new WeakHashMap<ClassLoader, ConcurrentMap<String, WeakReference<Class<?>>>>();
+
+    private static Class<?> cachedLoadClass(String className, ClassLoader classLoader) throws ClassNotFoundException {
+        ConcurrentMap<String, WeakReference<Class<?>>> classes;
+        synchronized (CLASSES) {
+            classes = CLASSES.get(classLoader);
+            if (classes == null) {
+                classes = new ConcurrentHashMap<String, WeakReference<Class<?>>>();
+                CLASSES.put(classLoader, classes);
+            }
+        }
+        WeakReference<Class<?>> ref = classes.get(className);
+        Class<?> cls = ref != null ? ref.get() : null;
+        if (cls == null) {
+            cls = nullSafeLoadClass(className, classLoader);
+            classes.put(className, new WeakReference<Class<?>>(cls));
+        }
+        return cls;
+    }
+
+    // no-arg constructors as () -> Object method handles; the lookup performs
+    // the same access checks as Class.newInstance() called from this class
+    private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                return MethodHandles.lookup()
+                        .findConstructor(type, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(Object.class));
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+    };
+
     static Class safeLoadClass(String className,
                                String defaultImplClassName,
                                ClassLoader classLoader) throws ClassNotFoundException {
 
+        boolean checked;
         try {
-            checkPackageAccess(className);
+            checked = checkPackageAccess(className);
         } catch (SecurityException se) {
             // anyone can access the platform default factory class without permission
             if (defaultImplClassName != null && defaultImplClassName.equals(className)) {
@@ -120,7 +216,8 @@ class ServiceLoaderUtil {
             // not platform default implementation ...
             throw se;
         }
-        return nullSafeLoadClass(className, classLoader);
+        // with a security manager the class is loaded on behalf of each caller
+        return checked ? nullSafeLoadClass(className, classLoader) : cachedLoadClass(className, classLoader);
     }
 
     static <T extends Exception> ClassLoader contextClassLoader(ExceptionHandler<T> exceptionHandler) throws T {
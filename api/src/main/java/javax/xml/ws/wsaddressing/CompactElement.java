@@ -0,0 +1,186 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.xml.ws.wsaddressing;
+
+import org.w3c.dom.Element;
+
+import javax.xml.namespace.QName;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable, compact form of an extension element of a
+ * {@link W3CEndpointReference}, such as a reference parameter or a metadata
+ * element.
+ * <p>
+ * The element is kept as its name together with its canonical XML
+ * serialization: self-contained, with the namespaces in scope that its values
+ * refer to declared on the element, namespace declarations it doesn't use
+ * left out, namespace declarations and attributes ordered and comments
+ * removed. Unlike a DOM {@link Element} it is cheap to keep, compare and
+ * write, a DOM tree is only created when {@link #toElement()} is called.
+ *
+ * @see W3CEndpointReference#getReferenceParameters()
+ * @see W3CEndpointReferenceTemplate#build(CompactElement...)
+ * @since JAX-WS 2.4
+ */
+public final class CompactElement {
+
+    private final QName name;
+    private final byte[] xml;
+    private int hash;
+
+    CompactElement(QName name, byte[] xml) {
+        this.name = name;
+        this.xml = xml;
+    }
+
+    /**
+     * Creates the compact form of given DOM element. Namespace declarations
+     * made by the ancestors of the element are not included, the element
+     * is expected to declare all the namespaces it uses; the declarations
+     * it doesn't use, by its names or by values which may be qualified names,
+     * are left out.
+     *
+     * @param element the element
+     * @return the compact form of the element
+     * @throws javax.xml.ws.WebServiceException if the element can't be serialized
+     */
+    public static CompactElement of(Element element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Null element");
+        }
+        return W3CEndpointReferenceCodec.compact(element);
+    }
+
+    /**
+     * Gets the qualified name of the element.
+     *
+     * @return the name of the element
+     */
+    public QName getName() {
+        return name;
+    }
+
+    /**
+     * Creates a new DOM element from this compact form, each call returns
+     * an element of a new document, which the caller may modify.
+     *
+     * @return the element
+     * @throws javax.xml.ws.WebServiceException if no DOM implementation is available
+     */
+    public Element toElement() {
+        return W3CEndpointReferenceCodec.toElement(this);
+    }
+
+    /**
+     * Gets the canonical XML serialization of the element, without an
+     * XML declaration.
+     *
+     * @return the element as XML
+     */
+    public String toXml() {
+        return new String(xml, StandardCharsets.UTF_8);
+    }
+
+    // UTF-8 bytes of the XML, not to be modified
+    byte[] bytes() {
+        return xml;
+    }
+
+    static List<CompactElement> compact(List<Element> elements) {
+        if (elements == null) {
+            return null;
+        }
+        List<CompactElement> list = new ArrayList<CompactElement>(elements.size());
+        for (Element element : elements) {
+            list.add(of(element));
+        }
+        return list;
+    }
+
+    static List<Element> toElements(List<CompactElement> elements) {
+        if (elements == null) {
+            return null;
+        }
+        List<Element> list = new ArrayList<Element>(elements.size());
+        for (CompactElement element : elements) {
+            list.add(element.toElement());
+        }
+        return list;
+    }
+
+    static List<CompactElement> unmodifiable(List<CompactElement> elements) {
+        return elements == null
+                ? Collections.<CompactElement>emptyList()
+                : Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * Compares the canonical serializations, two compact elements are
+     * equal when they have the same XML.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj
+                || obj instanceof CompactElement && Arrays.equals(xml, ((CompactElement) obj).xml);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(xml);
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Same as {@link #toXml()}.
+     */
+    @Override
+    public String toString() {
+        return toXml();
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package javax.xml.ws.wsaddressing;
+
+import javax.xml.ws.AsyncHandler;
+import javax.xml.ws.Response;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.AddressingFeature;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * A registry correlating the responses to requests sent with
+ * non-anonymous WS-Addressing responses, see
+ * {@link AddressingFeature.Responses#NON_ANONYMOUS}.
+ * <p>
+ * Such a response arrives on a connection of its own, its
+ * {@code wsa:RelatesTo} carrying the {@code wsa:MessageID} of the request.
+ * The request is registered by its MessageID when sent, which returns the
+ * {@link Response} completed when the response arrives and is passed to
+ * {@link #complete(String, Object, Map)}, or failed by
+ * {@link #fail(String, Throwable)}. A request without response within its
+ * timeout is failed with a {@link WebServiceException} caused by a
+ * {@link TimeoutException}. A response arriving for a MessageID not
+ * pending, e.g. after the timeout, is a late arrival and is ignored.
+ * <p>
+ * The pending requests are kept in a concurrent table, registering and
+ * completing them takes no lock. Timeouts are tracked by a hashed timer
+ * wheel advanced each tick by a daemon thread, so they fire up to a tick
+ * late. The number of pending requests, timeouts and late arrivals are
+ * counted.
+ * <p>
+ * A registry is thread safe. It must be closed once no longer used,
+ * which stops its timer and fails the requests still pending.
+ *
+ * @param <T> The type of the response
+ * @see AddressingFeature.Responses#NON_ANONYMOUS
+ * @since JAX-WS 2.4
+ */
+public final class CorrelationRegistry<T> implements AutoCloseable {
+
+    private final ConcurrentHashMap<String, Pending<T>> pending = new ConcurrentHashMap<String, Pending<T>>();
+
+    // registered requests not yet placed on the wheel, the wheel is only accessed by the timer
+    private final Queue<Pending<T>> registered = new ConcurrentLinkedQueue<Pending<T>>();
+    private final ArrayDeque<Pending<T>>[] wheel;
+    private final long tickNanos;
+    private final long start;
+    private long tick;
+
+    private final ScheduledExecutorService timer;
+    private volatile boolean closed;
+
+    private final LongAdder completions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder lateArrivals = new LongAdder();
+
+    /**
+     * Creates a registry with timeouts checked every 100 milliseconds.
+     */
+    public CorrelationRegistry() {
+        this(100, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * Creates a registry with timeouts checked every given tick.
+     *
+     * @param tickDuration duration of a tick of the timer wheel
+     * @param unit unit of {@code tickDuration}
+     * @param wheelSize number of ticks of the timer wheel, rounded up to a power
+     *                  of two; timeouts longer than the wheel take more turns
+     * @throws IllegalArgumentException if {@code tickDuration} or {@code wheelSize}
+     *                  is not positive
+     */
+    public CorrelationRegistry(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0 || wheelSize <= 0 || wheelSize > 1 << 20) {
+            throw new IllegalArgumentException("Invalid tick duration or wheel size: " + tickDuration + ", " + wheelSize);
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(wheelSize);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayDeque<Pending<T>>[] slots = new ArrayDeque[size < wheelSize ? size << 1 : size];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new ArrayDeque<Pending<T>>();
+        }
+        this.wheel = slots;
+        this.start = System.nanoTime();
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CorrelationRegistry-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers a request waiting for its response.
+     *
+     * @param messageID the {@code wsa:MessageID} of the request
+     * @param timeout time to wait for the response
+     * @param unit unit of {@code timeout}
+     * @return the response to the request, completed when the response arrives,
+     *         fails or times out; cancelling it unregisters the request
+     * @throws IllegalArgumentException if a request with the same {@code messageID}
+     *         is already pending
+     * @throws IllegalStateException if the registry is closed
+     * @throws NullPointerException if the {@code null} {@code messageID} is given
+     */
+    public Response<T> register(String messageID, long timeout, TimeUnit unit) {
+        return register(messageID, timeout, unit, null);
+    }
+
+    /**
+     * Registers a request waiting for its response, given handler is called
+     * once the response is completed, failed or timed out.
+     *
+     * @param messageID the {@code wsa:MessageID} of the request
+     * @param timeout time to wait for the response
+     * @param unit unit of {@code timeout}
+     * @param handler the handler notified of the response, may be {@code null};
+     *                it is called by the thread completing the response
+     * @return the response to the request, completed when the response arrives,
+     *         fails or times out; cancelling it unregisters the request
+     * @throws IllegalArgumentException if a request with the same {@code messageID}
+     *         is already pending
+     * @throws IllegalStateException if the registry is closed
+     * @throws NullPointerException if the {@code null} {@code messageID} is given
+     */
+    public Response<T> register(String messageID, long timeout, TimeUnit unit, final AsyncHandler<T> handler) {
+        if (closed) {
+            throw new IllegalStateException("CorrelationRegistry is closed");
+        }
+        final Pending<T> request = new Pending<T>(this, messageID, System.nanoTime() + unit.toNanos(timeout));
+        if (pending.putIfAbsent(messageID, request) != null) {
+            throw new IllegalArgumentException("A request is already pending for MessageID " + messageID);
+        }
+        if (handler != null) {
+            request.future.whenComplete(new BiConsumer<T, Throwable>() {
+                @Override
+                public void accept(T value, Throwable failure) {
+                    handler.handleResponse(request);
+                }
+            });
+        }
+        registered.offer(request);
+        if (closed && pending.remove(messageID, request)) {
+            // closed meanwhile, missed by close()
+            request.future.completeExceptionally(new WebServiceException("CorrelationRegistry is closed"));
+        }
+        return request;
+    }
+
+    /**
+     * Completes the pending request with given MessageID.
+     *
+     * @param relatesTo the {@code wsa:RelatesTo} of the response
+     * @param value the response
+     * @return {@code true} if the request was pending, {@code false} for a late arrival
+     */
+    public boolean complete(String relatesTo, T value) {
+        return complete(relatesTo, value, null);
+    }
+
+    /**
+     * Completes the pending request with given MessageID.
+     *
+     * @param relatesTo the {@code wsa:RelatesTo} of the response
+     * @param value the response
+     * @param context the response context, may be {@code null}
+     * @return {@code true} if the request was pending, {@code false} for a late arrival
+     */
+    public boolean complete(String relatesTo, T value, Map<String, Object> context) {
+        Pending<T> request = remove(relatesTo);
+        if (request == null) {
+            return false;
+        }
+        completions.increment();
+        request.context = context != null ? Collections.unmodifiableMap(context) : null;
+        request.future.complete(value);
+        return true;
+    }
+
+    /**
+     * Fails the pending request with given MessageID, e.g. for a fault
+     * received in response.
+     *
+     * @param relatesTo the {@code wsa:RelatesTo} of the response
+     * @param cause the cause of the failure
+     * @return {@code true} if the request was pending, {@code false} for a late arrival
+     */
+    public boolean fail(String relatesTo, Throwable cause) {
+        Pending<T> request = remove(relatesTo);
+        if (request == null) {
+            return false;
+        }
+        completions.increment();
+        request.future.completeExceptionally(cause);
+        return true;
+    }
+
+    private Pending<T> remove(String relatesTo) {
+        Pending<T> request = relatesTo != null ? pending.remove(relatesTo) : null;
+        if (request == null) {
+            lateArrivals.increment();
+        }
+        return request;
+    }
+
+    /**
+     * Gets the number of requests pending.
+     *
+     * @return number of requests registered and not yet completed, failed,
+     *         timed out or cancelled
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Gets the number of requests completed or failed by a response.
+     *
+     * @return number of responses correlated
+     */
+    public long getCompletedCount() {
+        return completions.sum();
+    }
+
+    /**
+     * Gets the number of requests timed out.
+     *
+     * @return number of requests failed by their timeout
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Gets the number of late arrivals.
+     *
+     * @return number of responses ignored as their request was not pending
+     */
+    public long getLateArrivalCount() {
+        return lateArrivals.sum();
+    }
+
+    /**
+     * Stops the timer of this registry and fails the requests still pending
+     * with a {@link WebServiceException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        timer.shutdownNow();
+        for (Pending<T> request : pending.values()) {
+            if (pending.remove(request.messageID, request)) {
+                request.future.completeExceptionally(new WebServiceException("CorrelationRegistry is closed"));
+            }
+        }
+        registered.clear();
+    }
+
+    // advances the wheel by a tick, expiring the requests due
+    private void tick() {
+        long now = ++tick;
+        int mask = wheel.length - 1;
+        for (Pending<T> request = registered.poll(); request != null; request = registered.poll()) {
+            if (request.isDone()) {
+                continue;
+            }
+            long due = (request.deadline - start + tickNanos - 1) / tickNanos;
+            request.due = Math.max(due, now);
+            wheel[(int) (request.due & mask)].add(request);
+        }
+        for (Iterator<Pending<T>> bucket = wheel[(int) (now & mask)].iterator(); bucket.hasNext(); ) {
+            Pending<T> request = bucket.next();
+            if (request.isDone()) {
+                bucket.remove();
+            } else if (request.due <= now) {
+                bucket.remove();
+                if (pending.remove(request.messageID, request)) {
+                    timeouts.increment();
+                    request.future.completeExceptionally(new WebServiceException(
+                            "No response to MessageID " + request.messageID,
+                            new TimeoutException()));
+                }
+            }
+        }
+    }
+
+    // a registered request, its response
+    private static final class Pending<T> implements Response<T> {
+        final CorrelationRegistry<T> registry;
+        final String messageID;
+        final long deadline;
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        volatile Map<String, Object> context;
+        // tick the request times out at, accessed by the timer only
+        long due;
+
+        Pending(CorrelationRegistry<T> registry, String messageID, long deadline) {
+            this.registry = registry;
+            this.messageID = messageID;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Map<String, Object> getContext() {
+            return context;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return registry.pending.remove(messageID, this) && future.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return future.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            return future.get();
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return future.get(timeout, unit);
+        }
+    }
+}
@@ -46,19 +46,36 @@ import org.w3c.dom.Element;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlAnyAttribute;
 import javax.xml.bind.annotation.XmlAnyElement;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 import javax.xml.bind.annotation.XmlValue;
 import javax.xml.namespace.QName;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamResult;
 import javax.xml.ws.EndpointReference;
 import javax.xml.ws.WebServiceException;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 /**
@@ -75,6 +92,11 @@ import java.util.Map;
  * <a href="http://www.w3.org/TR/2006/REC-ws-addr-core-20060509/">
  * WS-Addressing</a>
  * for more information on WS-Addressing EndpointReferences.
+ * <p>
+ * Reference parameters, metadata and extension elements are kept in
+ * their {@link CompactElement} form, DOM elements are only created when
+ * asked for by {@link CompactElement#toElement()} or when the EPR is
+ * marshalled by JAXB.
  *
  * @since 1.6, JAX-WS 2.1
  */
@@ -84,8 +106,6 @@ import java.util.Map;
 @XmlType(name="EndpointReferenceType",namespace=W3CEndpointReference.NS)
 public final class W3CEndpointReference extends EndpointReference {
 
-    private final JAXBContext w3cjc = getW3CJaxbContext();
-
     // should be changed to package private, keeping original modifier to keep backwards compatibility
 
     /**
@@ -117,11 +137,17 @@ public final class W3CEndpointReference extends EndpointReference {
      */
     public W3CEndpointReference(Source source) {
         try {
-            W3CEndpointReference epr = w3cjc.createUnmarshaller().unmarshal(source,W3CEndpointReference.class).getValue();
+            W3CEndpointReference epr = W3CEndpointReferenceCodec.read(source);
+            if (epr == null) {
+                Unmarshaller unmarshaller = acquireUnmarshaller();
+                epr = unmarshaller.unmarshal(source,W3CEndpointReference.class).getValue();
+                releaseUnmarshaller(unmarshaller);
+            }
             this.address = epr.address;
             this.metadata = epr.metadata;
             this.referenceParameters = epr.referenceParameters;
             this.elements = epr.elements;
+            this.compactElements = epr.compactElements;
             this.attributes = epr.attributes;
         } catch (JAXBException e) {
             throw new WebServiceException("Error unmarshalling W3CEndpointReference " ,e);
@@ -132,42 +158,414 @@ public final class W3CEndpointReference extends EndpointReference {
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The serialized form is kept once computed, so writing this EPR
+     * again to a {@link StreamResult} backed by a stream or a character
+     * stream only copies it.
      */
     @Override
     public void writeTo(Result result){
+        if (result instanceof StreamResult) {
+            StreamResult stream = (StreamResult) result;
+            try {
+                if (stream.getOutputStream() != null) {
+                    stream.getOutputStream().write(serialized());
+                    return;
+                }
+                if (stream.getWriter() != null) {
+                    stream.getWriter().write(toString());
+                    return;
+                }
+            } catch (IOException e) {
+                throw new WebServiceException("Error marshalling W3CEndpointReference. ", e);
+            }
+        }
+        if (W3CEndpointReferenceCodec.write(this, result)) {
+            return;
+        }
+        marshal(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The string is computed on first use and kept with this EPR.
+     */
+    @Override
+    public String toString() {
+        String s = string;
+        if (s == null) {
+            s = new String(serialized(), StandardCharsets.UTF_8);
+            string = s;
+        }
+        return s;
+    }
+
+    // UTF-8 XML document of this EPR, computed on first use
+    private byte[] serialized() {
+        byte[] bytes = serialized;
+        if (bytes == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+            StreamResult result = new StreamResult(out);
+            if (!W3CEndpointReferenceCodec.write(this, result)) {
+                marshal(result);
+            }
+            bytes = out.toByteArray();
+            serialized = bytes;
+        }
+        return bytes;
+    }
+
+    private void marshal(Result result) {
         try {
-            Marshaller marshaller = w3cjc.createMarshaller();
+            Marshaller marshaller = acquireMarshaller();
             marshaller.marshal(this, result);
+            releaseMarshaller(marshaller);
         } catch (JAXBException e) {
             throw new WebServiceException("Error marshalling W3CEndpointReference. ", e);
         }
     }
 
+    /**
+     * Writes this EPR in a compact binary form, which can be read back
+     * with {@link #readFrom(DataInput)}.
+     * <p>
+     * The binary form is meant for storing many EPRs, e.g. in session or
+     * correlation caches; it is smaller and faster to process than the
+     * XML infoset. Extension elements are written in a canonical form,
+     * their namespace declarations and attributes are ordered, adjacent
+     * text nodes merged and comments dropped.
+     *
+     * @param out the output to write this EPR to
+     * @throws IOException
+     *   If writing to {@code out} fails
+     * @throws NullPointerException
+     *   If the {@code null} {@code out} value is given
+     *
+     * @since JAX-WS 2.4
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        W3CEndpointReferenceBinary.write(this, out);
+    }
+
+    /**
+     * Reads an EPR from the binary form written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read the EPR from
+     * @return the EPR read
+     * @throws IOException
+     *   If reading from {@code in} fails or it does not contain
+     *   the binary form of a W3CEndpointReference
+     * @throws NullPointerException
+     *   If the {@code null} {@code in} value is given
+     *
+     * @since JAX-WS 2.4
+     */
+    public static W3CEndpointReference readFrom(DataInput in) throws IOException {
+        return W3CEndpointReferenceBinary.read(in);
+    }
+
+    /**
+     * Compares this EPR with given object structurally.
+     * <p>
+     * Two W3CEndpointReferences are equal if they have the same address,
+     * reference parameters, metadata, extension elements and extension
+     * attributes. Elements and attributes are compared by their qualified
+     * names and prefixes, text and attribute values by their content and,
+     * as they may be qualified names, by the namespaces bound to the
+     * prefixes they use. Namespace declarations are not compared otherwise:
+     * which element declares a namespace, declarations no name or value
+     * refers to, the order of attributes, comments, processing instructions
+     * and the way text is split into nodes are not significant.
+     *
+     * @param obj the object to compare this EPR with
+     * @return {@code true} if {@code obj} is a W3CEndpointReference
+     *   equal to this one
+     *
+     * @since JAX-WS 2.4
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof W3CEndpointReference)) {
+            return false;
+        }
+        W3CEndpointReference other = (W3CEndpointReference) obj;
+        return hashCode() == other.hashCode()
+                && Arrays.equals(structuralForm(), other.structuralForm());
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}.
+     * It is computed on first use and kept with this EPR.
+     *
+     * @return hash code of this EPR
+     *
+     * @since JAX-WS 2.4
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(structuralForm());
+            hash = h;
+        }
+        return h;
+    }
+
+    private byte[] structuralForm() {
+        byte[] form = structural;
+        if (form == null) {
+            form = W3CEndpointReferenceBinary.structuralForm(this);
+            structural = form;
+        }
+        return form;
+    }
+
+    /**
+     * Returns a canonical instance equal to this EPR.
+     * <p>
+     * As long as an interned EPR is reachable, interning an equal EPR
+     * returns that same instance, so that EPRs repeated across many
+     * messages (e.g. the same ReplyTo) can be shared rather than kept
+     * as copies. Interned EPRs are held weakly and don't prevent their
+     * garbage collection.
+     *
+     * @return an EPR equal to this one, the same instance for all
+     *   the equal EPRs interned
+     *
+     * @since JAX-WS 2.4
+     */
+    public W3CEndpointReference intern() {
+        for (Reference<? extends W3CEndpointReference> ref = COLLECTED.poll(); ref != null; ref = COLLECTED.poll()) {
+            INTERNED.remove(ref, ref);
+        }
+        Interned key = new Interned(this, COLLECTED);
+        while (true) {
+            Interned interned = INTERNED.putIfAbsent(key, key);
+            if (interned == null) {
+                return this;
+            }
+            W3CEndpointReference epr = interned.get();
+            if (epr != null) {
+                return epr;
+            }
+            // collected but not expunged yet
+            INTERNED.remove(interned, interned);
+        }
+    }
+
+    /**
+     * Gets the address of this EPR.
+     *
+     * @return the address URI, or {@code null} if this EPR has no {@code wsa:Address}
+     *
+     * @since JAX-WS 2.4
+     */
+    @XmlTransient
+    public String getAddress() {
+        return address != null ? address.uri : null;
+    }
+
+    /**
+     * Gets the extension attributes of this EPR.
+     *
+     * @return unmodifiable map of the attributes, empty if there are none
+     *
+     * @since JAX-WS 2.4
+     */
+    @XmlTransient
+    public Map<QName, String> getAttributes() {
+        return attributes != null
+                ? Collections.unmodifiableMap(attributes)
+                : Collections.<QName, String>emptyMap();
+    }
+
+    /**
+     * Gets the reference parameters of this EPR without creating DOM elements.
+     *
+     * @return unmodifiable list of the reference parameters, empty if there are none
+     *
+     * @since JAX-WS 2.4
+     */
+    @XmlTransient
+    public List<CompactElement> getReferenceParameters() {
+        return CompactElement.unmodifiable(referenceParameters != null
+                ? referenceParameters.compactElements()
+                : null);
+    }
+
+    /**
+     * Gets the metadata elements of this EPR without creating DOM elements.
+     *
+     * @return unmodifiable list of the metadata elements, empty if there are none
+     *
+     * @since JAX-WS 2.4
+     */
+    @XmlTransient
+    public List<CompactElement> getMetadata() {
+        return CompactElement.unmodifiable(metadata != null ? metadata.compactElements() : null);
+    }
+
+    /**
+     * Gets the extension elements of this EPR without creating DOM elements.
+     *
+     * @return unmodifiable list of the extension elements, empty if there are none
+     *
+     * @since JAX-WS 2.4
+     */
+    @XmlTransient
+    public List<CompactElement> getElements() {
+        return CompactElement.unmodifiable(compactElements());
+    }
+
+    // extension elements, compacted from DOM if created by JAXB
+    List<CompactElement> compactElements() {
+        List<CompactElement> list = compactElements;
+        if (list == null && elements != null) {
+            list = CompactElement.compact(elements);
+            compactElements = list;
+        }
+        return list;
+    }
+
+    // DOM elements for JAXB: unmarshalled into the field, compacted afterwards;
+    // marshalled from a list created for each call, not kept
+
+    @XmlAnyElement
+    private List<Element> getAnyElements() {
+        List<Element> list = elements;
+        return list != null ? list : CompactElement.toElements(compactElements);
+    }
+
+    private void setAnyElements(List<Element> elements) {
+        this.elements = elements;
+    }
+
+    private void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
+        compactElements = CompactElement.compact(elements);
+        elements = null;
+    }
+
     private static JAXBContext getW3CJaxbContext() {
-        try {
-            return JAXBContext.newInstance(W3CEndpointReference.class);
-        } catch (JAXBException e) {
-            throw new WebServiceException("Error creating JAXBContext for W3CEndpointReference. ", e);
+        JAXBContext context = JaxbContextHolder.context;
+        if (context == null) {
+            synchronized (JaxbContextHolder.class) {
+                context = JaxbContextHolder.context;
+                if (context == null) {
+                    try {
+                        context = JAXBContext.newInstance(W3CEndpointReference.class);
+                    } catch (JAXBException e) {
+                        // not remembered, the next call tries again
+                        throw new WebServiceException("Error creating JAXBContext for W3CEndpointReference. ", e);
+                    }
+                    JaxbContextHolder.context = context;
+                }
+            }
         }
+        return context;
     }
 
-    // private but necessary properties for databinding
+    // marshallers and unmarshallers are not thread safe, they are taken from the pool
+    // for the duration of a single call and only returned if the call succeeded
+
+    private static Marshaller acquireMarshaller() throws JAXBException {
+        Marshaller marshaller = JaxbContextHolder.MARSHALLERS.poll();
+        return marshaller != null ? marshaller : getW3CJaxbContext().createMarshaller();
+    }
+
+    private static void releaseMarshaller(Marshaller marshaller) {
+        JaxbContextHolder.MARSHALLERS.offer(marshaller);
+    }
+
+    private static Unmarshaller acquireUnmarshaller() throws JAXBException {
+        Unmarshaller unmarshaller = JaxbContextHolder.UNMARSHALLERS.poll();
+        return unmarshaller != null ? unmarshaller : getW3CJaxbContext().createUnmarshaller();
+    }
+
+    private static void releaseUnmarshaller(Unmarshaller unmarshaller) {
+        JaxbContextHolder.UNMARSHALLERS.offer(unmarshaller);
+    }
+
+    // JAXBContext shared by all the instances, created on first successful use
+    private static final class JaxbContextHolder {
+        static volatile JAXBContext context;
+
+        // idle marshallers and unmarshallers, bounded so that a burst of
+        // concurrent calls does not keep its instances forever
+        static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors());
+        static final BlockingQueue<Marshaller> MARSHALLERS = new ArrayBlockingQueue<Marshaller>(POOL_SIZE);
+        static final BlockingQueue<Unmarshaller> UNMARSHALLERS = new ArrayBlockingQueue<Unmarshaller>(POOL_SIZE);
+    }
+
+    // interned instances by their structural form, see intern()
+    private static final ConcurrentMap<Interned, Interned> INTERNED = new ConcurrentHashMap<Interned, Interned>();
+    private static final ReferenceQueue<W3CEndpointReference> COLLECTED = new ReferenceQueue<W3CEndpointReference>();
+
+    // weak reference to an interned EPR, also the key it is interned with;
+    // keys compare the structural forms of their EPRs
+    private static final class Interned extends WeakReference<W3CEndpointReference> {
+        private final byte[] form;
+        private final int hash;
+
+        Interned(W3CEndpointReference epr, ReferenceQueue<W3CEndpointReference> queue) {
+            super(epr, queue);
+            this.form = epr.structuralForm();
+            this.hash = epr.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Interned)) {
+                return false;
+            }
+            Interned other = (Interned) obj;
+            return hash == other.hash && Arrays.equals(form, other.form);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // structural hash code and form, computed on first use
+    @XmlTransient
+    private int hash;
+    @XmlTransient
+    private volatile byte[] structural;
+
+    // serialized form and string, computed on first use
+    @XmlTransient
+    private volatile byte[] serialized;
+    @XmlTransient
+    private volatile String string;
+
+    // properties for databinding, not private as they are also
+    // read and written by W3CEndpointReferenceCodec
     @XmlElement(name="Address",namespace=NS)
-    private Address address;
+    Address address;
     @XmlElement(name="ReferenceParameters",namespace=NS)
-    private Elements referenceParameters;
+    Elements referenceParameters;
     @XmlElement(name="Metadata",namespace=NS)
-    private Elements metadata;
-    // attributes and elements are not private for performance reasons
-    // (JAXB can bypass reflection)
+    Elements metadata;
+    // attributes are not private for performance reasons
+    // (JAXB can bypass reflection), elements are bound by getAnyElements()
     @XmlAnyAttribute
     Map<QName,String> attributes;
-    @XmlAnyElement
+    @XmlTransient
     List<Element> elements;
+    @XmlTransient
+    volatile List<CompactElement> compactElements;
 
 
     @XmlType(name="address", namespace=W3CEndpointReference.NS)
-    private static class Address {
+    static class Address {
         protected Address() {}
         @XmlValue
         String uri;
@@ -177,12 +575,38 @@ public final class W3CEndpointReference extends EndpointReference {
 
 
     @XmlType(name="elements", namespace=W3CEndpointReference.NS)
-    private static class Elements {
+    static class Elements {
         protected Elements() {}
-        @XmlAnyElement
+        @XmlTransient
         List<Element> elements;
         @XmlAnyAttribute
         Map<QName,String> attributes;
+        @XmlTransient
+        volatile List<CompactElement> compactElements;
+
+        List<CompactElement> compactElements() {
+            List<CompactElement> list = compactElements;
+            if (list == null && elements != null) {
+                list = CompactElement.compact(elements);
+                compactElements = list;
+            }
+            return list;
+        }
+
+        @XmlAnyElement
+        private List<Element> getAnyElements() {
+            List<Element> list = elements;
+            return list != null ? list : CompactElement.toElements(compactElements);
+        }
+
+        private void setAnyElements(List<Element> elements) {
+            this.elements = elements;
+        }
+
+        private void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
+            compactElements = CompactElement.compact(elements);
+            elements = null;
+        }
     }
 
 }
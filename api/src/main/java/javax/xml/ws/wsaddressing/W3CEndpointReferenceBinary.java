@@ -0,0 +1,521 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.xml.ws.wsaddressing;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compact binary form of {@link W3CEndpointReference}.
+ *
+ * The form starts with a magic number carrying the version, followed by the
+ * EPR attributes, Address, ReferenceParameters, Metadata and extension elements.
+ * Strings are written as a variable length byte count followed by UTF-8
+ * bytes. Names (namespaces, prefixes, local names) are interned: the first
+ * occurrence is written in full and later ones as an index into the table of
+ * names already written.
+ *
+ * Extension elements are written from their canonical {@link CompactElement}
+ * form, adjacent text merged, each child node preceded by its kind and the
+ * children ended by {@code END}, so that equal EPRs have the same binary form.
+ */
+final class W3CEndpointReferenceBinary {
+
+    // "EPR" followed by the version of the form
+    private static final int MAGIC = 0x45505201;
+
+    private static final int END = 0;
+    private static final int ELEMENT = 1;
+    private static final int TEXT = 2;
+    private static final int PROCESSING_INSTRUCTION = 3;
+
+    private W3CEndpointReferenceBinary() {
+    }
+
+    // ------------------------------------------------------------------ writing
+
+    static void write(W3CEndpointReference epr, DataOutput out) throws IOException {
+        write(epr, out, true);
+    }
+
+    /**
+     * Form of the EPR for structural comparison; it can't be read back.
+     * Elements are written without their namespace declarations, so where
+     * a namespace is declared, and declarations nothing refers to (e.g.
+     * the ones added by JAXB), do not matter. Instead, each text and
+     * attribute value is followed by the namespaces bound to the prefixes
+     * of the qualified names it may contain (e.g. {@code wsam:ServiceName}
+     * content), so that they keep the namespaces they refer to. Processing
+     * instructions, which JAXB drops, are left out.
+     */
+    static byte[] structuralForm(W3CEndpointReference epr) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            write(epr, new DataOutputStream(bytes), false);
+        } catch (IOException e) {
+            // not thrown by ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void write(W3CEndpointReference epr, DataOutput out, boolean declarations) throws IOException {
+        Output output = new Output(out, declarations);
+        out.writeInt(MAGIC);
+        output.writeAttributes(epr.attributes);
+        if (epr.address == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            output.writeAttributes(epr.address.attributes);
+            output.writeString(epr.address.uri);
+        }
+        output.writeElements(epr.referenceParameters);
+        output.writeElements(epr.metadata);
+        output.writeElementList(epr.compactElements());
+    }
+
+    private static final class Output {
+        private final DataOutput out;
+        // namespace declarations made by each element, or else the namespaces
+        // referred to by the values, see structuralForm()
+        private final boolean declarations;
+        private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+        Output(DataOutput out, boolean declarations) {
+            this.out = out;
+            this.declarations = declarations;
+        }
+
+        void writeElements(W3CEndpointReference.Elements elements) throws IOException {
+            if (elements == null) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                writeAttributes(elements.attributes);
+                writeElementList(elements.compactElements());
+            }
+        }
+
+        void writeElementList(List<CompactElement> elements) throws IOException {
+            int size = elements == null ? 0 : elements.size();
+            writeSize(size);
+            for (int i = 0; i < size; i++) {
+                CompactElement element = elements.get(i);
+                try {
+                    XMLStreamReader reader = W3CEndpointReferenceCodec.reader(element);
+                    writeElement(reader, Collections.<String, String>emptyMap());
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    throw new IOException("Error reading element " + element.getName(), e);
+                }
+            }
+        }
+
+        void writeAttributes(Map<QName, String> attributes) throws IOException {
+            if (attributes == null || attributes.isEmpty()) {
+                writeSize(0);
+                return;
+            }
+            List<String[]> sorted = new ArrayList<String[]>(attributes.size());
+            for (Map.Entry<QName, String> attribute : attributes.entrySet()) {
+                QName name = attribute.getKey();
+                sorted.add(new String[] {
+                        name.getNamespaceURI(), name.getLocalPart(), name.getPrefix(), attribute.getValue()});
+            }
+            writeNames(sorted, Collections.<String, String>emptyMap());
+        }
+
+        // the element at which the reader is, the reader is left at its end;
+        // scope holds the namespace bindings made by the ancestors, by prefix
+        void writeElement(XMLStreamReader reader, Map<String, String> scope) throws IOException, XMLStreamException {
+            writeName(nullToEmpty(reader.getNamespaceURI()));
+            writeName(reader.getLocalName());
+            writeName(nullToEmpty(reader.getPrefix()));
+
+            if (declarations) {
+                List<String[]> declared = new ArrayList<String[]>();
+                for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                    declared.add(new String[] {
+                            nullToEmpty(reader.getNamespacePrefix(i)), nullToEmpty(reader.getNamespaceURI(i))});
+                }
+                Collections.sort(declared, W3CEndpointReferenceCodec.BY_NAME);
+                writeSize(declared.size());
+                for (String[] declaration : declared) {
+                    writeName(declaration[0]);
+                    writeName(declaration[1]);
+                }
+            } else if (reader.getNamespaceCount() > 0) {
+                // unprefixed names in values are not resolved, the default namespace is left out
+                scope = new HashMap<String, String>(scope);
+                for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                    String prefix = nullToEmpty(reader.getNamespacePrefix(i));
+                    if (!prefix.isEmpty()) {
+                        scope.put(prefix, nullToEmpty(reader.getNamespaceURI(i)));
+                    }
+                }
+            }
+            List<String[]> attributes = new ArrayList<String[]>(reader.getAttributeCount());
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                attributes.add(new String[] {
+                        nullToEmpty(reader.getAttributeNamespace(i)), reader.getAttributeLocalName(i),
+                        nullToEmpty(reader.getAttributePrefix(i)), reader.getAttributeValue(i)});
+            }
+            writeNames(attributes, scope);
+
+            StringBuilder text = null;
+            while (true) {
+                int event = reader.next();
+                if (!declarations && event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                    // not kept by JAXB, not compared
+                    continue;
+                }
+                if (text != null && event != XMLStreamConstants.CHARACTERS
+                        && event != XMLStreamConstants.CDATA && event != XMLStreamConstants.SPACE) {
+                    out.writeByte(TEXT);
+                    writeString(text.toString());
+                    writeReferences(text.toString(), scope);
+                    text = null;
+                }
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        out.writeByte(ELEMENT);
+                        writeElement(reader, scope);
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (text == null) {
+                            text = new StringBuilder();
+                        }
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        out.writeByte(PROCESSING_INSTRUCTION);
+                        writeName(reader.getPITarget());
+                        writeString(nullToEmpty(reader.getPIData()));
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        out.writeByte(END);
+                        return;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        // attributes as namespace, local name, prefix and value, sorted by name
+        private void writeNames(List<String[]> attributes, Map<String, String> scope) throws IOException {
+            Collections.sort(attributes, W3CEndpointReferenceCodec.BY_NAME);
+            writeSize(attributes.size());
+            for (String[] attribute : attributes) {
+                writeName(attribute[0]);
+                writeName(attribute[1]);
+                writeName(attribute[2]);
+                writeString(attribute[3]);
+                writeReferences(attribute[3], scope);
+            }
+        }
+
+        // structural form only: the namespaces bound in scope to the prefixes of
+        // the whitespace separated tokens of a value which may be qualified names
+        private void writeReferences(String value, Map<String, String> scope) throws IOException {
+            if (declarations) {
+                return;
+            }
+            List<String> namespaces = new ArrayList<String>();
+            if (value != null && !scope.isEmpty()) {
+                for (String token : value.trim().split("\\s+")) {
+                    int colon = token.indexOf(':');
+                    String namespace = colon > 0 ? scope.get(token.substring(0, colon)) : null;
+                    if (namespace != null) {
+                        namespaces.add(namespace);
+                    }
+                }
+            }
+            writeSize(namespaces.size());
+            for (String namespace : namespaces) {
+                writeName(namespace);
+            }
+        }
+
+        void writeName(String name) throws IOException {
+            Integer index = names.get(name);
+            if (index != null) {
+                writeSize(index + 1);
+            } else {
+                names.put(name, names.size());
+                writeSize(0);
+                writeString(name);
+            }
+        }
+
+        // null is written as 0, other strings as byte count + 1
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeSize(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeSize(bytes.length + 1);
+            out.write(bytes);
+        }
+
+        // unsigned variable length int, 7 bits per byte
+        void writeSize(int size) throws IOException {
+            while ((size & ~0x7F) != 0) {
+                out.writeByte((size & 0x7F) | 0x80);
+                size >>>= 7;
+            }
+            out.writeByte(size);
+        }
+    }
+
+    // ------------------------------------------------------------------ reading
+
+    static W3CEndpointReference read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a binary form of W3CEndpointReference");
+        }
+        Input input = new Input(in);
+        W3CEndpointReference epr = new W3CEndpointReference();
+        epr.attributes = input.readAttributes();
+        if (in.readBoolean()) {
+            W3CEndpointReference.Address address = new W3CEndpointReference.Address();
+            address.attributes = input.readAttributes();
+            address.uri = input.readString();
+            epr.address = address;
+        }
+        epr.referenceParameters = input.readElements();
+        epr.metadata = input.readElements();
+        epr.compactElements = input.readElementList();
+        return epr;
+    }
+
+    private static final class Input {
+        // strings longer than this are read in chunks of this size
+        private static final int CHUNK_SIZE = 8192;
+
+        private final DataInput in;
+        private final List<String> names = new ArrayList<String>();
+
+        Input(DataInput in) {
+            this.in = in;
+        }
+
+        W3CEndpointReference.Elements readElements() throws IOException {
+            if (!in.readBoolean()) {
+                return null;
+            }
+            W3CEndpointReference.Elements elements = new W3CEndpointReference.Elements();
+            elements.attributes = readAttributes();
+            elements.compactElements = readElementList();
+            return elements;
+        }
+
+        List<CompactElement> readElementList() throws IOException {
+            int size = readSize();
+            if (size == 0) {
+                return null;
+            }
+            List<CompactElement> elements = new ArrayList<CompactElement>(Math.min(size, 16));
+            for (int i = 0; i < size; i++) {
+                elements.add(readElement());
+            }
+            return elements;
+        }
+
+        Map<QName, String> readAttributes() throws IOException {
+            int size = readSize();
+            if (size == 0) {
+                return null;
+            }
+            Map<QName, String> attributes = new LinkedHashMap<QName, String>();
+            for (int i = 0; i < size; i++) {
+                String namespace = readName();
+                String localName = readName();
+                String prefix = readName();
+                attributes.put(new QName(namespace, localName, prefix), readString());
+            }
+            return attributes;
+        }
+
+        // compact element, written as the codec writes it when parsing
+        CompactElement readElement() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            try {
+                XMLStreamWriter writer = W3CEndpointReferenceCodec.bytesWriter(bytes);
+                QName name = readElement(writer, new W3CEndpointReferenceCodec.Scope());
+                writer.writeEndDocument();
+                writer.close();
+                return new CompactElement(name, bytes.toByteArray());
+            } catch (XMLStreamException e) {
+                throw new IOException("Error writing element", e);
+            }
+        }
+
+        private QName readElement(XMLStreamWriter writer, W3CEndpointReferenceCodec.Scope scope)
+                throws IOException, XMLStreamException {
+
+            String namespace = readName();
+            String localName = readName();
+            String prefix = readName();
+
+            Map<String, String> declarations = new TreeMap<String, String>();
+            for (int i = readSize(); i > 0; i--) {
+                String declared = readName();
+                declarations.put(declared, readName());
+            }
+            List<String[]> attributes = new ArrayList<String[]>();
+            for (int i = readSize(); i > 0; i--) {
+                String attributeNamespace = readName();
+                String attributeName = readName();
+                attributes.add(new String[] {attributeNamespace, attributeName, readName(), nullToEmpty(readString())});
+            }
+
+            int mark = scope.mark();
+            int kind = in.readByte();
+            boolean empty = kind == END;
+            W3CEndpointReferenceCodec.startElement(writer, scope, prefix, localName, namespace,
+                    empty, declarations, attributes);
+            for (; kind != END; kind = in.readByte()) {
+                switch (kind) {
+                    case ELEMENT:
+                        readElement(writer, scope);
+                        break;
+                    case TEXT:
+                        writer.writeCharacters(nullToEmpty(readString()));
+                        break;
+                    case PROCESSING_INSTRUCTION:
+                        String target = readName();
+                        W3CEndpointReferenceCodec.writeProcessingInstruction(writer, target, readString());
+                        break;
+                    default:
+                        throw new StreamCorruptedException("Unknown node kind " + kind);
+                }
+            }
+            if (!empty) {
+                writer.writeEndElement();
+            }
+            scope.reset(mark);
+            return new QName(namespace, localName, prefix);
+        }
+
+        String readName() throws IOException {
+            int index = readSize();
+            if (index == 0) {
+                String name = readString();
+                if (name == null) {
+                    throw new StreamCorruptedException("Missing name");
+                }
+                names.add(name);
+                return name;
+            }
+            if (index > names.size()) {
+                throw new StreamCorruptedException("Unknown name " + index);
+            }
+            return names.get(index - 1);
+        }
+
+        String readString() throws IOException {
+            int size = readSize();
+            if (size == 0) {
+                return null;
+            }
+            int length = size - 1;
+            if (length <= CHUNK_SIZE) {
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            // the size is not trusted: a truncated or corrupt input fails
+            // at its end instead of allocating for the size it claims
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE);
+            byte[] chunk = new byte[CHUNK_SIZE];
+            for (int remaining = length; remaining > 0; remaining -= chunk.length) {
+                if (remaining < chunk.length) {
+                    chunk = new byte[remaining];
+                }
+                in.readFully(chunk);
+                bytes.write(chunk, 0, chunk.length);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        int readSize() throws IOException {
+            int size = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.readByte();
+                size |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (size < 0) {
+                        break;
+                    }
+                    return size;
+                }
+            }
+            throw new StreamCorruptedException("Malformed size");
+        }
+    }
+
+    // ------------------------------------------------------------------ helpers
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -361,6 +361,33 @@ public final class W3CEndpointReferenceBuilder {
                 referenceParameters, elements, attributes);
     }
     
+    /**
+     * Creates a {@code W3CEndpointReferenceTemplate} from the accumulated
+     * properties set on this {@code W3CEndpointReferenceBuilder}
+     * instance.
+     * <p>
+     * The {@code W3CEndpointReference} of the template is built once, in the
+     * same way as by {@link #build()}. The template can then build many
+     * {@code W3CEndpointReference} instances differing only in their reference
+     * parameters or extension attributes, without building them again with the
+     * {@link javax.xml.ws.spi.Provider}.
+     *
+     * @return {@code W3CEndpointReferenceTemplate} from the accumulated
+     * properties set on this {@code W3CEndpointReferenceBuilder}
+     * instance. This method never returns {@code null}.
+     *
+     * @throws IllegalStateException
+     *     In the same cases as {@link #build()}.
+     * @throws WebServiceException If an error occurs while creating the
+     *                             {@code W3CEndpointReference}.
+     *
+     * @see W3CEndpointReferenceTemplate
+     * @since JAX-WS 2.4
+     */
+    public W3CEndpointReferenceTemplate template() {
+        return new W3CEndpointReferenceTemplate(build());
+    }
+
     private String address;
     private List<Element> referenceParameters;
     private List<Element> metadata;
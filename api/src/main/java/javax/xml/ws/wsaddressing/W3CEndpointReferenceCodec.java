@@ -0,0 +1,1046 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.xml.ws.wsaddressing;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.stax.StAXResult;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.ws.WebServiceException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes {@link W3CEndpointReference} with StAX, without going
+ * through the JAXB runtime.
+ *
+ * Only stream based sources and results are handled here, for anything else
+ * the callers fall back to JAXB. The infoset produced and accepted is the same
+ * as the one of the JAXB binding: any root element name is accepted, the
+ * Address, ReferenceParameters and Metadata children may come in any order,
+ * other children are kept as {@link CompactElement}s carrying the namespace
+ * declarations in scope, and comments and whitespace between the known children
+ * are dropped. The serialized form is not the same byte for byte though: the
+ * order of attributes and namespace declarations may differ, and an empty
+ * element such as {@code Address} is written as an empty-element tag.
+ *
+ * The conversions of elements to and from their compact form are done here too.
+ */
+final class W3CEndpointReferenceCodec {
+
+    private static final String XML_DECLARATION =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+    private W3CEndpointReferenceCodec() {
+    }
+
+    /**
+     * Reads the EPR from given source.
+     *
+     * @return the EPR or {@code null} if the source is not supported
+     * @throws WebServiceException if the source could not be read
+     */
+    static W3CEndpointReference read(Source source) {
+        XMLStreamReader reader;
+        boolean owned = false;
+        try {
+            if (source instanceof StAXSource && ((StAXSource) source).getXMLStreamReader() != null) {
+                reader = ((StAXSource) source).getXMLStreamReader();
+            } else if (source instanceof StreamSource) {
+                reader = createReader((StreamSource) source);
+                if (reader == null) {
+                    return null;
+                }
+                owned = true;
+            } else {
+                return null;
+            }
+        } catch (XMLStreamException e) {
+            throw new WebServiceException("Error unmarshalling W3CEndpointReference ", e);
+        }
+
+        try {
+            return read(reader);
+        } catch (XMLStreamException e) {
+            throw new WebServiceException("Error unmarshalling W3CEndpointReference ", e);
+        } finally {
+            if (owned) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the EPR to given result.
+     *
+     * @return {@code false} if the result is not supported
+     * @throws WebServiceException if the EPR could not be written
+     */
+    static boolean write(W3CEndpointReference epr, Result result) {
+        try {
+            if (result instanceof StAXResult && ((StAXResult) result).getXMLStreamWriter() != null) {
+                XMLStreamWriter writer = ((StAXResult) result).getXMLStreamWriter();
+                write(epr, writer);
+                writer.flush();
+                return true;
+            }
+            if (result instanceof StreamResult) {
+                XMLStreamWriter writer = createWriter((StreamResult) result);
+                if (writer == null) {
+                    return false;
+                }
+                write(epr, writer);
+                // completes an empty root element, there is nothing else open
+                writer.writeEndDocument();
+                writer.close();
+                return true;
+            }
+            return false;
+        } catch (XMLStreamException e) {
+            throw new WebServiceException("Error marshalling W3CEndpointReference. ", e);
+        } catch (IOException e) {
+            throw new WebServiceException("Error marshalling W3CEndpointReference. ", e);
+        }
+    }
+
+    private static XMLStreamReader createReader(StreamSource source) throws XMLStreamException {
+        XMLInputFactory factory = Factories.INPUT;
+        if (factory == null) {
+            return null;
+        }
+        String systemId = source.getSystemId();
+        InputStream in = source.getInputStream();
+        if (in != null) {
+            return systemId != null
+                    ? factory.createXMLStreamReader(systemId, in)
+                    : factory.createXMLStreamReader(in);
+        }
+        Reader reader = source.getReader();
+        if (reader != null) {
+            return systemId != null
+                    ? factory.createXMLStreamReader(systemId, reader)
+                    : factory.createXMLStreamReader(reader);
+        }
+        // only a system id, let JAXB resolve it
+        return null;
+    }
+
+    private static XMLStreamWriter createWriter(StreamResult result) throws XMLStreamException, IOException {
+        XMLOutputFactory factory = Factories.OUTPUT;
+        if (factory == null) {
+            return null;
+        }
+        // the declaration is written directly so that it is the same as the JAXB one
+        Writer writer = result.getWriter();
+        if (writer != null) {
+            writer.write(XML_DECLARATION);
+            return factory.createXMLStreamWriter(writer);
+        }
+        OutputStream out = result.getOutputStream();
+        if (out != null) {
+            out.write(XML_DECLARATION.getBytes(StandardCharsets.UTF_8));
+            return factory.createXMLStreamWriter(out, "UTF-8");
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------ reading
+
+    /**
+     * Reads the EPR from the first element of given reader, the reader is left
+     * at the end of that element.
+     */
+    static W3CEndpointReference read(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            if (!reader.hasNext()) {
+                throw new WebServiceException("Source did not contain W3CEndpointReference");
+            }
+            reader.next();
+        }
+
+        W3CEndpointReference epr = new W3CEndpointReference();
+        Map<String, String> scope = declarations(reader, new LinkedHashMap<String, String>());
+        epr.attributes = readAttributes(reader);
+
+        List<CompactElement> elements = null;
+        for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String name = W3CEndpointReference.NS.equals(reader.getNamespaceURI()) ? reader.getLocalName() : null;
+            if ("Address".equals(name)) {
+                epr.address = readAddress(reader);
+            } else if ("ReferenceParameters".equals(name)) {
+                epr.referenceParameters = readElements(reader, scope);
+            } else if ("Metadata".equals(name)) {
+                epr.metadata = readElements(reader, scope);
+            } else {
+                if (elements == null) {
+                    elements = new ArrayList<CompactElement>();
+                }
+                elements.add(readElement(reader, scope));
+            }
+        }
+        epr.compactElements = elements;
+        return epr;
+    }
+
+    private static W3CEndpointReference.Address readAddress(XMLStreamReader reader) throws XMLStreamException {
+        W3CEndpointReference.Address address = new W3CEndpointReference.Address();
+        address.attributes = readAttributes(reader);
+        StringBuilder uri = new StringBuilder();
+        int depth = 0;
+        for (int event = reader.next(); depth > 0 || event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    // unexpected content, skipped as by the binding
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (depth == 0) {
+                        uri.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        address.uri = uri.toString();
+        return address;
+    }
+
+    private static W3CEndpointReference.Elements readElements(XMLStreamReader reader, Map<String, String> parentScope)
+            throws XMLStreamException {
+
+        W3CEndpointReference.Elements elements = new W3CEndpointReference.Elements();
+        Map<String, String> scope = declarations(reader, new LinkedHashMap<String, String>(parentScope));
+        elements.attributes = readAttributes(reader);
+        List<CompactElement> list = null;
+        for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (list == null) {
+                    list = new ArrayList<CompactElement>();
+                }
+                list.add(readElement(reader, scope));
+            }
+        }
+        elements.compactElements = list;
+        return elements;
+    }
+
+    /**
+     * Reads an element so that it stays meaningful on its own: the namespaces
+     * in scope which its values refer to (e.g. QNames in content) are declared
+     * on it. Namespaces neither used by its names nor referred to by its values
+     * are left out, whether in scope or declared in it (as JAXB does when
+     * marshalling), so that it reads the same as the DOM element given to
+     * the builder.
+     */
+    private static CompactElement readElement(XMLStreamReader reader, Map<String, String> scope)
+            throws XMLStreamException {
+
+        Map<String, String> bindings = new LinkedHashMap<String, String>();
+        NamespaceContext context = reader.getNamespaceContext();
+        bind(bindings, reader.getPrefix(), context);
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            bind(bindings, reader.getAttributePrefix(i), context);
+        }
+        Usage usage = new Usage();
+        CompactElement element = compact(reader, bindings, usage);
+        Map<String, String> referred = new TreeMap<String, String>();
+        for (String prefix : usage.unbound) {
+            String namespace = scope.get(prefix);
+            if (namespace != null && namespace.length() > 0) {
+                referred.put(prefix, namespace);
+            }
+        }
+        if (!usage.prune() && referred.isEmpty()) {
+            return element;
+        }
+        return compact(reader(element), referred, usage);
+    }
+
+    private static Map<QName, String> readAttributes(XMLStreamReader reader) {
+        int count = reader.getAttributeCount();
+        if (count == 0) {
+            return null;
+        }
+        Map<QName, String> attributes = new HashMap<QName, String>();
+        for (int i = 0; i < count; i++) {
+            attributes.put(new QName(nullToEmpty(reader.getAttributeNamespace(i)),
+                    reader.getAttributeLocalName(i),
+                    nullToEmpty(reader.getAttributePrefix(i))), reader.getAttributeValue(i));
+        }
+        return attributes;
+    }
+
+    private static Map<String, String> declarations(XMLStreamReader reader, Map<String, String> bindings) {
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            bindings.put(nullToEmpty(reader.getNamespacePrefix(i)), nullToEmpty(reader.getNamespaceURI(i)));
+        }
+        return bindings;
+    }
+
+    // binding of a prefix which may come from outside of the EPR
+    private static void bind(Map<String, String> bindings, String prefix, NamespaceContext context) {
+        prefix = nullToEmpty(prefix);
+        if (!bindings.containsKey(prefix)) {
+            String namespace = context.getNamespaceURI(prefix);
+            if (namespace != null && namespace.length() > 0) {
+                bindings.put(prefix, namespace);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ writing
+
+    /**
+     * Writes the EPR as an element, without document start and end.
+     * Namespaces are tracked here rather than through the writer, all
+     * the bindings needed by the EPR are declared within it.
+     */
+    static void write(W3CEndpointReference epr, XMLStreamWriter writer) throws XMLStreamException {
+        Scope scope = new Scope();
+        List<CompactElement> elements = epr.compactElements();
+        boolean empty = epr.address == null && epr.referenceParameters == null && epr.metadata == null
+                && isEmpty(elements);
+        startElement(writer, "EndpointReference", empty);
+        declare(writer, scope, "", W3CEndpointReference.NS);
+        writeAttributes(writer, scope, epr.attributes);
+        if (empty) {
+            return;
+        }
+
+        if (epr.address != null) {
+            boolean noUri = epr.address.uri == null || epr.address.uri.length() == 0;
+            int mark = scope.mark();
+            startElement(writer, "Address", noUri);
+            writeAttributes(writer, scope, epr.address.attributes);
+            if (!noUri) {
+                writer.writeCharacters(epr.address.uri);
+                writer.writeEndElement();
+            }
+            scope.reset(mark);
+        }
+        writeElements(writer, scope, "ReferenceParameters", epr.referenceParameters);
+        writeElements(writer, scope, "Metadata", epr.metadata);
+        if (elements != null) {
+            for (CompactElement element : elements) {
+                copy(reader(element), writer, scope, null);
+            }
+        }
+        writer.writeEndElement();
+    }
+
+    private static void writeElements(XMLStreamWriter writer, Scope scope, String name,
+                                      W3CEndpointReference.Elements elements) throws XMLStreamException {
+
+        if (elements == null) {
+            return;
+        }
+        List<CompactElement> list = elements.compactElements();
+        boolean empty = isEmpty(list);
+        int mark = scope.mark();
+        startElement(writer, name, empty);
+        writeAttributes(writer, scope, elements.attributes);
+        if (!empty) {
+            for (CompactElement element : list) {
+                copy(reader(element), writer, scope, null);
+            }
+            writer.writeEndElement();
+        }
+        scope.reset(mark);
+    }
+
+    private static void startElement(XMLStreamWriter writer, String localName, boolean empty)
+            throws XMLStreamException {
+
+        if (empty) {
+            writer.writeEmptyElement("", localName, W3CEndpointReference.NS);
+        } else {
+            writer.writeStartElement("", localName, W3CEndpointReference.NS);
+        }
+    }
+
+    // attributes of an element just started, declared in the scope from given mark on
+    private static void writeAttributes(XMLStreamWriter writer, Scope scope, Map<QName, String> attributes)
+            throws XMLStreamException {
+
+        if (attributes == null) {
+            return;
+        }
+        int mark = scope.mark();
+        for (Map.Entry<QName, String> attribute : attributes.entrySet()) {
+            QName name = attribute.getKey();
+            writeAttribute(writer, scope, mark,
+                    name.getNamespaceURI(), name.getLocalPart(), name.getPrefix(), attribute.getValue());
+        }
+    }
+
+    // ------------------------------------------------------------------ elements
+
+    /**
+     * Copies the element at which given reader is, leaving the reader at its
+     * end. Its namespace declarations are written unless already in scope,
+     * together with the given ones for the element itself; namespace
+     * declarations and attributes are written ordered, comments dropped.
+     */
+    static void copy(XMLStreamReader reader, XMLStreamWriter writer, Scope scope, Map<String, String> declarations)
+            throws XMLStreamException {
+        copy(reader, writer, scope, declarations, null);
+    }
+
+    /**
+     * Copies as above, the namespaces used by the copy being collected in
+     * given usage, or its unused declarations left out once pruning.
+     */
+    static void copy(XMLStreamReader reader, XMLStreamWriter writer, Scope scope, Map<String, String> declarations,
+                     Usage usage) throws XMLStreamException {
+
+        List<Integer> marks = new ArrayList<Integer>();
+        StringBuilder text = usage == null ? null : new StringBuilder();
+        int event = reader.getEventType();
+        while (true) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (usage != null) {
+                        usage.value(text, scope);
+                    }
+                    int mark = scope.mark();
+                    String prefix = nullToEmpty(reader.getPrefix());
+                    String localName = reader.getLocalName();
+                    String namespace = nullToEmpty(reader.getNamespaceURI());
+
+                    Map<String, String> bindings = new TreeMap<String, String>();
+                    if (marks.isEmpty()) {
+                        if (declarations != null) {
+                            bindings.putAll(declarations);
+                        }
+                        // the copy has no default namespace unless it declares one,
+                        // whatever the default namespace of the enclosing element
+                        bindings.put("", "");
+                    }
+                    Map<String, String> declared = declarations(reader, new TreeMap<String, String>());
+                    if (usage != null) {
+                        usage.declarations(declared);
+                    }
+                    bindings.putAll(declared);
+                    List<String[]> attributes = new ArrayList<String[]>(reader.getAttributeCount());
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        attributes.add(new String[] {
+                                nullToEmpty(reader.getAttributeNamespace(i)), reader.getAttributeLocalName(i),
+                                nullToEmpty(reader.getAttributePrefix(i)), reader.getAttributeValue(i)});
+                    }
+
+                    event = reader.next();
+                    boolean empty = event == XMLStreamConstants.END_ELEMENT;
+                    startElement(writer, scope, prefix, localName, namespace, empty, bindings, attributes);
+                    if (usage != null) {
+                        usage.name(prefix, namespace);
+                        for (String[] attribute : attributes) {
+                            if (!attribute[2].isEmpty()) {
+                                usage.name(attribute[2], attribute[0]);
+                            }
+                            usage.value(attribute[3], scope);
+                        }
+                    }
+                    if (empty) {
+                        scope.reset(mark);
+                        if (marks.isEmpty()) {
+                            return;
+                        }
+                        event = reader.next();
+                    } else {
+                        marks.add(mark);
+                    }
+                    continue;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (usage != null) {
+                        usage.value(text, scope);
+                    }
+                    writer.writeEndElement();
+                    scope.reset(marks.remove(marks.size() - 1));
+                    if (marks.isEmpty()) {
+                        return;
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    if (text != null) {
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    writeProcessingInstruction(writer, reader.getPITarget(), reader.getPIData());
+                    break;
+                default:
+                    // comments are not kept, as with the JAXB binding
+                    break;
+            }
+            event = reader.next();
+        }
+    }
+
+    /**
+     * Namespaces used by an element being copied: by the names of its
+     * elements and attributes, and by its values which may be qualified
+     * names, i.e. whitespace separated tokens with a prefix. Once pruning,
+     * a second copy of the element leaves out the declarations unused
+     * by the first one.
+     */
+    static final class Usage {
+        // prefixes of values which are not bound in the copy
+        final Set<String> unbound = new HashSet<String>();
+        private final Set<String> declared = new HashSet<String>();
+        private final Set<String> used = new HashSet<String>();
+        private boolean pruning;
+
+        void declarations(Map<String, String> declarations) {
+            Iterator<Map.Entry<String, String>> i = declarations.entrySet().iterator();
+            while (i.hasNext()) {
+                Map.Entry<String, String> declaration = i.next();
+                String binding = declaration.getKey() + ' ' + declaration.getValue();
+                if (!pruning) {
+                    declared.add(binding);
+                } else if (!used.contains(binding)) {
+                    i.remove();
+                }
+            }
+        }
+
+        void name(String prefix, String namespace) {
+            if (!pruning) {
+                used.add(prefix + ' ' + namespace);
+            }
+        }
+
+        // consumes given value when a StringBuilder
+        void value(CharSequence value, Scope scope) {
+            if (!pruning && value != null && value.length() > 0) {
+                for (String token : value.toString().trim().split("\\s+")) {
+                    int colon = token.indexOf(':');
+                    if (colon > 0) {
+                        String prefix = token.substring(0, colon);
+                        String namespace = scope.namespace(prefix);
+                        if (namespace.isEmpty()) {
+                            unbound.add(prefix);
+                        } else {
+                            used.add(prefix + ' ' + namespace);
+                        }
+                    }
+                }
+            }
+            if (value instanceof StringBuilder) {
+                ((StringBuilder) value).setLength(0);
+            }
+        }
+
+        // starts pruning, whether some declaration is unused
+        boolean prune() {
+            pruning = true;
+            return !used.containsAll(declared);
+        }
+    }
+
+    /**
+     * Starts an element with given namespace declarations, ordered by prefix,
+     * and attributes as namespace, local name, prefix and value; binds any
+     * prefix needed which is not declared.
+     */
+    static void startElement(XMLStreamWriter writer, Scope scope, String prefix, String localName,
+                             String namespace, boolean empty, Map<String, String> declarations,
+                             List<String[]> attributes) throws XMLStreamException {
+
+        int mark = scope.mark();
+        if (empty) {
+            writer.writeEmptyElement(prefix, localName, namespace);
+        } else {
+            writer.writeStartElement(prefix, localName, namespace);
+        }
+        for (Map.Entry<String, String> declaration : declarations.entrySet()) {
+            if (!declaration.getValue().equals(scope.namespace(declaration.getKey()))) {
+                declare(writer, scope, declaration.getKey(), declaration.getValue());
+            }
+        }
+        if (!namespace.equals(scope.namespace(prefix)) && !scope.isDeclared(mark, prefix)) {
+            declare(writer, scope, prefix, namespace);
+        }
+        Collections.sort(attributes, BY_NAME);
+        for (String[] attribute : attributes) {
+            writeAttribute(writer, scope, mark, attribute[0], attribute[1], attribute[2], attribute[3]);
+        }
+    }
+
+    /**
+     * Writes DOM element, declarations of the element itself are written
+     * unless already in scope, the others are bound as needed; the
+     * namespaces used are collected in given usage.
+     */
+    static void writeElement(XMLStreamWriter writer, Scope scope, Element element, Usage usage)
+            throws XMLStreamException {
+        int mark = scope.mark();
+        Map<String, String> declarations = new TreeMap<String, String>();
+        List<String[]> attributes = new ArrayList<String[]>();
+        NamedNodeMap map = element.getAttributes();
+        for (int i = 0; i < map.getLength(); i++) {
+            Attr attribute = (Attr) map.item(i);
+            String namespace = nullToEmpty(attribute.getNamespaceURI());
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(namespace)) {
+                declarations.put(attribute.getPrefix() == null ? "" : localName(attribute), attribute.getValue());
+            } else {
+                attributes.add(new String[] {
+                        namespace, localName(attribute), nullToEmpty(attribute.getPrefix()), attribute.getValue()});
+            }
+        }
+        usage.declarations(declarations);
+        boolean empty = !element.hasChildNodes();
+        String prefix = nullToEmpty(element.getPrefix());
+        String namespace = nullToEmpty(element.getNamespaceURI());
+        startElement(writer, scope, prefix, localName(element), namespace, empty, declarations, attributes);
+        usage.name(prefix, namespace);
+        for (String[] attribute : attributes) {
+            if (!attribute[2].isEmpty()) {
+                usage.name(attribute[2], attribute[0]);
+            }
+            usage.value(attribute[3], scope);
+        }
+
+        if (!empty) {
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                writeNode(writer, scope, child, usage);
+            }
+            writer.writeEndElement();
+        }
+        scope.reset(mark);
+    }
+
+    private static void writeNode(XMLStreamWriter writer, Scope scope, Node node, Usage usage)
+            throws XMLStreamException {
+
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                writeElement(writer, scope, (Element) node, usage);
+                break;
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+                writer.writeCharacters(node.getNodeValue());
+                usage.value(node.getNodeValue(), scope);
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                writeProcessingInstruction(writer, node.getNodeName(), node.getNodeValue());
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    writeNode(writer, scope, child, usage);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    static void writeProcessingInstruction(XMLStreamWriter writer, String target, String data)
+            throws XMLStreamException {
+
+        if (data == null || data.length() == 0) {
+            writer.writeProcessingInstruction(target);
+        } else {
+            writer.writeProcessingInstruction(target, data);
+        }
+    }
+
+    private static void writeAttribute(XMLStreamWriter writer, Scope scope, int mark, String namespace,
+                                       String localName, String prefix, String value) throws XMLStreamException {
+
+        if (namespace.length() == 0) {
+            writer.writeAttribute(localName, value);
+        } else {
+            writer.writeAttribute(bindAttribute(writer, scope, mark, prefix, namespace), namespace, localName, value);
+        }
+    }
+
+    /**
+     * Binds a prefix for an attribute namespace on the current element whose
+     * declarations start at given mark, attributes can't use the default namespace.
+     */
+    private static String bindAttribute(XMLStreamWriter writer, Scope scope, int mark,
+                                        String prefix, String namespace) throws XMLStreamException {
+
+        if (prefix.length() > 0 && namespace.equals(scope.namespace(prefix))) {
+            return prefix;
+        }
+        if (prefix.length() == 0 || scope.isDeclared(mark, prefix)) {
+            prefix = scope.prefix(namespace);
+            if (prefix != null) {
+                return prefix;
+            }
+            int i = 1;
+            do {
+                prefix = "ns" + i++;
+            } while (scope.namespace(prefix).length() > 0);
+        }
+        declare(writer, scope, prefix, namespace);
+        return prefix;
+    }
+
+    private static void declare(XMLStreamWriter writer, Scope scope, String prefix, String namespace)
+            throws XMLStreamException {
+
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return;
+        }
+        if (prefix.length() == 0) {
+            writer.writeDefaultNamespace(namespace);
+        } else {
+            writer.writeNamespace(prefix, namespace);
+        }
+        scope.bind(prefix, namespace);
+    }
+
+    private static boolean isEmpty(List<?> elements) {
+        return elements == null || elements.isEmpty();
+    }
+
+    /**
+     * Namespace bindings declared by the XML being written, as prefix and
+     * namespace pairs in document order; a mark is taken when an element is
+     * started and the scope reset to it when the element ends.
+     */
+    static final class Scope {
+        private final List<String> bindings = new ArrayList<String>();
+
+        int mark() {
+            return bindings.size();
+        }
+
+        void reset(int mark) {
+            bindings.subList(mark, bindings.size()).clear();
+        }
+
+        void bind(String prefix, String namespace) {
+            bindings.add(prefix);
+            bindings.add(namespace);
+        }
+
+        boolean isDeclared(int mark, String prefix) {
+            for (int i = mark; i < bindings.size(); i += 2) {
+                if (bindings.get(i).equals(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String namespace(String prefix) {
+            if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+                return XMLConstants.XML_NS_URI;
+            }
+            for (int i = bindings.size() - 2; i >= 0; i -= 2) {
+                if (bindings.get(i).equals(prefix)) {
+                    return bindings.get(i + 1);
+                }
+            }
+            return "";
+        }
+
+        // a non default prefix currently bound to given namespace
+        String prefix(String namespace) {
+            if (XMLConstants.XML_NS_URI.equals(namespace)) {
+                return XMLConstants.XML_NS_PREFIX;
+            }
+            for (int i = bindings.size() - 2; i >= 0; i -= 2) {
+                String prefix = bindings.get(i);
+                if (prefix.length() > 0 && bindings.get(i + 1).equals(namespace)
+                        && namespace.equals(namespace(prefix))) {
+                    return prefix;
+                }
+            }
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------ compact elements
+
+    /**
+     * Compact form of the element at which given reader is, with given
+     * namespace declarations added to it; the namespaces it uses are
+     * collected in given usage unless null.
+     */
+    static CompactElement compact(XMLStreamReader reader, Map<String, String> declarations, Usage usage)
+            throws XMLStreamException {
+
+        QName name = new QName(nullToEmpty(reader.getNamespaceURI()), reader.getLocalName(),
+                nullToEmpty(reader.getPrefix()));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        XMLStreamWriter writer = bytesWriter(bytes);
+        copy(reader, writer, new Scope(), declarations, usage);
+        writer.writeEndDocument();
+        writer.close();
+        return new CompactElement(name, bytes.toByteArray());
+    }
+
+    /**
+     * Compact form of given DOM element, leaving out the namespace
+     * declarations it doesn't use.
+     */
+    static CompactElement compact(Element element) {
+        QName name = new QName(nullToEmpty(element.getNamespaceURI()), localName(element),
+                nullToEmpty(element.getPrefix()));
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            XMLStreamWriter writer = bytesWriter(bytes);
+            Usage usage = new Usage();
+            writeElement(writer, new Scope(), element, usage);
+            writer.writeEndDocument();
+            writer.close();
+            CompactElement compact = new CompactElement(name, bytes.toByteArray());
+            return usage.prune() ? compact(reader(compact), null, usage) : compact;
+        } catch (XMLStreamException e) {
+            throw new WebServiceException("Error writing element " + name, e);
+        }
+    }
+
+    static XMLStreamWriter bytesWriter(ByteArrayOutputStream bytes) throws XMLStreamException {
+        if (Factories.OUTPUT == null) {
+            throw new XMLStreamException("No XMLOutputFactory available");
+        }
+        return Factories.OUTPUT.createXMLStreamWriter(bytes, "UTF-8");
+    }
+
+    /**
+     * Reader of the compact element, at its start.
+     */
+    static XMLStreamReader reader(CompactElement element) throws XMLStreamException {
+        if (Factories.INPUT == null) {
+            throw new XMLStreamException("No XMLInputFactory available");
+        }
+        XMLStreamReader reader = Factories.INPUT.createXMLStreamReader(
+                new ByteArrayInputStream(element.bytes()), "UTF-8");
+        reader.nextTag();
+        return reader;
+    }
+
+    static Element toElement(CompactElement element) {
+        try {
+            XMLStreamReader reader = reader(element);
+            Document document = newDocument();
+            Element root = createElement(reader, document);
+            Node parent = root;
+            while (parent != null) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        Element child = createElement(reader, document);
+                        parent.appendChild(child);
+                        parent = child;
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        parent = parent == root ? null : parent.getParentNode();
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        String text = reader.getText();
+                        Node last = parent.getLastChild();
+                        if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+                            ((Text) last).appendData(text);
+                        } else {
+                            parent.appendChild(document.createTextNode(text));
+                        }
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        parent.appendChild(document.createProcessingInstruction(
+                                reader.getPITarget(), nullToEmpty(reader.getPIData())));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            reader.close();
+            return root;
+        } catch (XMLStreamException e) {
+            throw new WebServiceException("Error reading element " + element.getName(), e);
+        }
+    }
+
+    private static Element createElement(XMLStreamReader reader, Document document) {
+        Element element = document.createElementNS(emptyToNull(reader.getNamespaceURI()),
+                qualify(reader.getPrefix(), reader.getLocalName()));
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = nullToEmpty(reader.getNamespacePrefix(i));
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                    prefix.length() == 0 ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ':' + prefix,
+                    nullToEmpty(reader.getNamespaceURI(i)));
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)),
+                    qualify(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                    reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    static Document newDocument() {
+        DOMImplementation implementation = Factories.DOM;
+        if (implementation == null) {
+            throw new WebServiceException("Error creating DOM document. ", Factories.DOM_FAILURE);
+        }
+        return implementation.createDocument(null, null, null);
+    }
+
+    // attributes as namespace, local name, prefix and value, ordered by name
+    static final Comparator<String[]> BY_NAME = new Comparator<String[]>() {
+        @Override
+        public int compare(String[] n1, String[] n2) {
+            int result = n1[0].compareTo(n2[0]);
+            return result != 0 ? result : n1[1].compareTo(n2[1]);
+        }
+    };
+
+    // ------------------------------------------------------------------ helpers
+
+    private static String localName(Node node) {
+        String localName = node.getLocalName();
+        return localName != null ? localName : node.getNodeName();
+    }
+
+    private static String qualify(String prefix, String localName) {
+        return prefix == null || prefix.length() == 0 ? localName : prefix + ':' + localName;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.length() == 0 ? null : value;
+    }
+
+    // factories are thread safe once configured, created on first use
+    private static final class Factories {
+        static final XMLInputFactory INPUT;
+        static final XMLOutputFactory OUTPUT;
+        static final DOMImplementation DOM;
+        static final ParserConfigurationException DOM_FAILURE;
+
+        static {
+            XMLInputFactory input = null;
+            try {
+                input = XMLInputFactory.newFactory();
+                input.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+                // EPRs have no business with DTDs
+                input.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+                input.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            } catch (RuntimeException e) {
+                // no usable StAX implementation, JAXB is used instead
+                input = null;
+            }
+            INPUT = input;
+
+            XMLOutputFactory output = null;
+            try {
+                output = XMLOutputFactory.newFactory();
+            } catch (RuntimeException e) {
+                output = null;
+            }
+            OUTPUT = output;
+
+            DOMImplementation dom = null;
+            ParserConfigurationException failure = null;
+            try {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setNamespaceAware(true);
+                dom = factory.newDocumentBuilder().getDOMImplementation();
+            } catch (ParserConfigurationException e) {
+                failure = e;
+            }
+            DOM = dom;
+            DOM_FAILURE = failure;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package javax.xml.ws.wsaddressing;
+
+
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import javax.xml.ws.WebServiceException;
+
+
+/**
+ * This class is a reusable template for building {@code W3CEndpointReference}
+ * instances which differ only in their reference parameters or extension
+ * attributes, e.g. an EPR per session carrying the session id as a
+ * reference parameter.
+ * <p>
+ * A template is created by {@link W3CEndpointReferenceBuilder#template()},
+ * which builds the EPR with the properties set on the builder once,
+ * using the {@link javax.xml.ws.spi.Provider}. The EPRs built from the
+ * template are that EPR with the given reference parameters and extension
+ * attributes added, they are built without the {@code Provider}.
+ * <p>
+ * A template is immutable and can be used by multiple threads.
+ * It keeps its own copy of the elements set on the builder, so the
+ * builder and its elements can be changed once the template is created.
+ * The DOM elements given to the {@code build} methods are copied in their
+ * {@link CompactElement} form; building from {@code CompactElement}s
+ * avoids that copy.
+ *
+ * @see W3CEndpointReferenceBuilder#template()
+ * @since JAX-WS 2.4
+ */
+public final class W3CEndpointReferenceTemplate {
+
+    private final W3CEndpointReference base;
+
+    W3CEndpointReferenceTemplate(W3CEndpointReference epr) {
+        this.base = copy(epr);
+    }
+
+    /**
+     * Builds a {@code W3CEndpointReference} from this template
+     * with given reference parameters added.
+     *
+     * @param referenceParameters The elements to be added to the
+     *      {@code wsa:ReferenceParameters} element, after the reference
+     *      parameters of the template.
+     *
+     * @return {@code W3CEndpointReference} built from this template.
+     *   This method never returns {@code null}.
+     *
+     * @throws java.lang.IllegalArgumentException if any of the
+     *   {@code referenceParameters} is {@code null}.
+     */
+    public W3CEndpointReference build(Element... referenceParameters) {
+        return build(Arrays.asList(referenceParameters), Collections.<QName, String>emptyMap());
+    }
+
+    /**
+     * Builds a {@code W3CEndpointReference} from this template
+     * with given reference parameters added.
+     *
+     * @param referenceParameters The elements to be added to the
+     *      {@code wsa:ReferenceParameters} element, after the reference
+     *      parameters of the template.
+     *
+     * @return {@code W3CEndpointReference} built from this template.
+     *   This method never returns {@code null}.
+     *
+     * @throws java.lang.IllegalArgumentException if any of the
+     *   {@code referenceParameters} is {@code null}.
+     */
+    public W3CEndpointReference build(CompactElement... referenceParameters) {
+        for (CompactElement referenceParameter : referenceParameters) {
+            if (referenceParameter == null)
+                throw new java.lang.IllegalArgumentException("The referenceParameter cannot be null.");
+        }
+        return extend(Arrays.asList(referenceParameters), Collections.<QName, String>emptyMap());
+    }
+
+    /**
+     * Builds a {@code W3CEndpointReference} from this template
+     * with given reference parameters and extension attributes added.
+     *
+     * @param referenceParameters The elements to be added to the
+     *      {@code wsa:ReferenceParameters} element, after the reference
+     *      parameters of the template.
+     * @param attributes The extension attributes to be added to the
+     *      {@code wsa:EndpointReference} element, replacing the template
+     *      attributes of the same name.
+     *
+     * @return {@code W3CEndpointReference} built from this template.
+     *   This method never returns {@code null}.
+     *
+     * @throws java.lang.IllegalArgumentException if any of the
+     *   {@code referenceParameters} or any of the {@code attributes}
+     *   name or value is {@code null}.
+     */
+    public W3CEndpointReference build(List<Element> referenceParameters, Map<QName, String> attributes) {
+        for (Element referenceParameter : referenceParameters) {
+            if (referenceParameter == null)
+                throw new java.lang.IllegalArgumentException("The referenceParameter cannot be null.");
+        }
+        return extend(CompactElement.compact(referenceParameters), attributes);
+    }
+
+    // the base EPR with given reference parameters and attributes added
+    private W3CEndpointReference extend(List<CompactElement> referenceParameters, Map<QName, String> attributes) {
+        for (Map.Entry<QName, String> attribute : attributes.entrySet()) {
+            if (attribute.getKey() == null || attribute.getValue() == null) {
+                throw new IllegalArgumentException("The extension attribute name or value cannot be null.");
+            }
+        }
+
+        // the parts of the template are never modified and can be shared
+        W3CEndpointReference epr = new W3CEndpointReference();
+        epr.address = base.address;
+        epr.metadata = base.metadata;
+        epr.compactElements = base.compactElements();
+        epr.attributes = base.attributes;
+        epr.referenceParameters = base.referenceParameters;
+
+        if (!attributes.isEmpty()) {
+            epr.attributes = base.attributes == null
+                    ? new HashMap<QName, String>()
+                    : new HashMap<QName, String>(base.attributes);
+            epr.attributes.putAll(attributes);
+        }
+        if (!referenceParameters.isEmpty()) {
+            W3CEndpointReference.Elements elements = new W3CEndpointReference.Elements();
+            List<CompactElement> list = new ArrayList<CompactElement>();
+            if (base.referenceParameters != null) {
+                elements.attributes = base.referenceParameters.attributes;
+                if (base.referenceParameters.compactElements() != null) {
+                    list.addAll(base.referenceParameters.compactElements());
+                }
+            }
+            list.addAll(referenceParameters);
+            elements.compactElements = list;
+            epr.referenceParameters = elements;
+        }
+        return epr;
+    }
+
+    /**
+     * Returns the EPR built from this template without any reference
+     * parameters or attributes added.
+     *
+     * @return {@code W3CEndpointReference} of this template
+     */
+    public W3CEndpointReference build() {
+        return base;
+    }
+
+    // copy of its own, so that it is not shared with the builder caller
+    private static W3CEndpointReference copy(W3CEndpointReference epr) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            epr.writeTo(new DataOutputStream(bytes));
+            return W3CEndpointReference.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        } catch (IOException e) {
+            throw new WebServiceException("Error creating W3CEndpointReferenceTemplate. ", e);
+        }
+    }
+}
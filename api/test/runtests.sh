@@ -47,6 +47,7 @@
 # in short:
 #
 # 1) ServiceLoader: /META-INF/services/javax.xml.ws.spi.Provider
+#    (replaced by /META-INF/jaxws.index if it lists javax.xml.ws.spi.Provider)
 # 2) $java.home/lib/jaxws.properties - keyd by javax.xml.ws.spi.Provider
 # 3) SystemProperty: javax.xml.ws.spi.Provider
 #  * OSGi (non-SPEC)
@@ -79,6 +80,36 @@
 #        14) prop.file sys.property  > prop.file
 #        15) - sys. property - > sys.property
 #
+#        # build-time index:
+#        16) index > ServiceLoader
+#        17) empty index entry > prop.file (ServiceLoader skipped)
+#        18) index without entry > ServiceLoader
+#        22) generated index > ServiceLoader
+#
+#        # W3CEndpointReference:
+#        19) binary form round trip
+#
+#        # CorrelationRegistry:
+#        20) loopback responses
+#
+#        # Provider lookup cache:
+#        21) invalidation
+#
+#        # PortCache:
+#        23) counts, keys and contexts
+#
+#        # DispatchPool:
+#        24) borrow, return, timeout, eviction and close
+#
+#        # Endpoint publishing with virtual threads:
+#        25) executor shut down on failure
+#
+#        # Service close:
+#        26) delegate closed, virtual thread executor shut down
+#
+#        # ServiceCache:
+#        27) hit, miss, race and eviction
+#
 
 export JDK_CONF_DIR=jre/lib
 #export JDK_CONF_DIR=conf
@@ -109,6 +140,15 @@ compile() {
     javac -cp . -XDignore.symbol.file  $1
 }
 
+# compiles against the API being tested, for tests using API not present in JDK
+compileEndorsed() {
+    if [ "$ENDORSED" != "" ]; then
+        javac -cp . -endorseddirs $ENDORSED_DIR -XDignore.symbol.file  $1
+    else
+        javac -cp .:$ENDORSED_DIR/* -XDignore.symbol.file  $1
+    fi
+}
+
 #
 # Each test call tests 5 different cases:
 #  1) JAXBContext.newInstance( String path )
@@ -182,6 +222,14 @@ prepare() {
     #listDirectory
 }
 
+#
+# Sets up META-INF/jaxws.index file, to be called after prepare
+prepareIndex() {
+    mkdir -p META-INF
+    printf "$1\n" > META-INF/jaxws.index
+    echo index: $1
+}
+
 function listDirectory() {
     echo == prepared done ================================
     echo `pwd`:
@@ -195,7 +243,15 @@ function compileAll() {
 
     # current version of API
     compile 'jaxws/factory/*.java'
-    compile 'jaxws/test/*.java'
+    compile 'jaxws/test/Test.java'
+    compileEndorsed 'jaxws/test/EndpointReferenceRoundTrip.java'
+    compileEndorsed 'jaxws/test/CorrelationLoopback.java'
+    compileEndorsed 'jaxws/test/ProviderLookupTest.java'
+    compileEndorsed 'jaxws/test/PortCacheTest.java'
+    compileEndorsed 'jaxws/test/DispatchPoolTest.java'
+    compileEndorsed 'jaxws/test/EndpointPublishTest.java'
+    compileEndorsed 'jaxws/test/ServiceCloseTest.java'
+    compileEndorsed 'jaxws/test/ServiceCacheTest.java'
 }
 
 #TCCL_DIR=../ctx-classloader-test
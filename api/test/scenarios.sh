@@ -114,3 +114,66 @@ test jaxws.factory.Valid - -Djavax.xml.ws.spi.Provider=jaxws.factory.Valid
 scenario 15
 prepare - -
 test jaxws.factory.Valid - -Djavax.xml.ws.spi.Provider=jaxws.factory.Valid
+
+scenario 16
+prepare - jaxws.factory.Valid
+prepareIndex javax.xml.ws.spi.Provider=jaxws.factory.Valid2
+test jaxws.factory.Valid2 -
+
+scenario 17
+prepare javax.xml.ws.spi.Provider=jaxws.factory.Valid3 jaxws.factory.Valid
+prepareIndex javax.xml.ws.spi.Provider=
+test jaxws.factory.Valid3 -
+
+scenario 18
+prepare - jaxws.factory.Valid
+prepareIndex something=AnotherThing
+test jaxws.factory.Valid -
+
+scenario 19
+prepare - -
+echo java $D $ENDORSED jaxws.test.EndpointReferenceRoundTrip
+java $D $ENDORSED -cp .:$ENDORSED_DIR/* jaxws.test.EndpointReferenceRoundTrip
+
+scenario 20
+prepare - -
+echo java $D $ENDORSED jaxws.test.CorrelationLoopback
+java $D $ENDORSED -cp .:$ENDORSED_DIR/* jaxws.test.CorrelationLoopback
+
+scenario 21
+prepare - -
+echo java $D $ENDORSED jaxws.test.ProviderLookupTest
+java $D $ENDORSED -cp .:$ENDORSED_DIR/* jaxws.test.ProviderLookupTest
+
+scenario 22
+prepare - jaxws.factory.Valid2
+echo java $ENDORSED javax.xml.ws.spi.ProviderIndexGenerator META-INF/jaxws.index
+java $ENDORSED -cp .:$ENDORSED_DIR/* javax.xml.ws.spi.ProviderIndexGenerator META-INF/jaxws.index
+cat META-INF/jaxws.index
+rm -rf META-INF/services
+test jaxws.factory.Valid2 -
+
+scenario 23
+prepare - -
+echo java $D $ENDORSED -Djavax.xml.ws.spi.Provider=jaxws.test.StubProvider jaxws.test.PortCacheTest
+java $D $ENDORSED -Djavax.xml.ws.spi.Provider=jaxws.test.StubProvider -cp .:$ENDORSED_DIR/* jaxws.test.PortCacheTest
+
+scenario 24
+prepare - -
+echo java $D $ENDORSED -Djavax.xml.ws.spi.Provider=jaxws.test.StubProvider jaxws.test.DispatchPoolTest
+java $D $ENDORSED -Djavax.xml.ws.spi.Provider=jaxws.test.StubProvider -cp .:$ENDORSED_DIR/* jaxws.test.DispatchPoolTest
+
+scenario 25
+prepare - -
+echo java $D $ENDORSED -Djavax.xml.ws.spi.Provider=jaxws.test.StubProvider jaxws.test.EndpointPublishTest
+java $D $ENDORSED -Djavax.xml.ws.spi.Provider=jaxws.test.StubProvider -cp .:$ENDORSED_DIR/* jaxws.test.EndpointPublishTest
+
+scenario 26
+prepare - -
+echo java $D $ENDORSED -Djavax.xml.ws.spi.Provider=jaxws.test.StubProvider jaxws.test.ServiceCloseTest
+java $D $ENDORSED -Djavax.xml.ws.spi.Provider=jaxws.test.StubProvider -cp .:$ENDORSED_DIR/* jaxws.test.ServiceCloseTest
+
+scenario 27
+prepare - -
+echo java $D $ENDORSED -Djavax.xml.ws.spi.Provider=jaxws.test.StubProvider jaxws.test.ServiceCacheTest
+java $D $ENDORSED -Djavax.xml.ws.spi.Provider=jaxws.test.StubProvider -cp .:$ENDORSED_DIR/* jaxws.test.ServiceCacheTest
@@ -0,0 +1,158 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package jaxws.test;
+
+import javax.xml.ws.AsyncHandler;
+import javax.xml.ws.Response;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.wsaddressing.CorrelationRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests CorrelationRegistry against a loopback stand-in of a service
+ * replying to non-anonymous addresses: requests are "sent" to a pool of
+ * threads, which reply in any order by the request MessageID.
+ */
+public class CorrelationLoopback {
+
+    private static final int REQUESTS = 200;
+
+    public static void main(String[] args) throws Exception {
+        ExecutorService loopback = Executors.newFixedThreadPool(4);
+        try (final CorrelationRegistry<String> registry =
+                     new CorrelationRegistry<String>(10, TimeUnit.MILLISECONDS, 64)) {
+
+            // all the requests answered, in any order
+            List<String> ids = new ArrayList<String>();
+            List<Response<String>> responses = new ArrayList<Response<String>>();
+            for (int i = 0; i < REQUESTS; i++) {
+                String id = "urn:uuid:" + UUID.randomUUID();
+                ids.add(id);
+                responses.add(registry.register(id, 10, TimeUnit.SECONDS));
+            }
+            assertTrue(registry.getPendingCount() == REQUESTS, "pending: " + registry.getPendingCount());
+            List<String> shuffled = new ArrayList<String>(ids);
+            Collections.shuffle(shuffled);
+            for (final String id : shuffled) {
+                loopback.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        registry.complete(id, "reply to " + id);
+                    }
+                });
+            }
+            boolean correlated = true;
+            for (int i = 0; i < REQUESTS; i++) {
+                correlated &= ("reply to " + ids.get(i)).equals(responses.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertTrue(correlated, "responses not correlated to their requests");
+            assertTrue(registry.getPendingCount() == 0 && registry.getCompletedCount() == REQUESTS,
+                    "pending: " + registry.getPendingCount() + ", completed: " + registry.getCompletedCount());
+
+            // no reply within the timeout, the reply arriving later is ignored
+            final CountDownLatch handled = new CountDownLatch(1);
+            Response<String> timedOut = registry.register("urn:timeout", 50, TimeUnit.MILLISECONDS,
+                    new AsyncHandler<String>() {
+                        @Override
+                        public void handleResponse(Response<String> res) {
+                            handled.countDown();
+                        }
+                    });
+            try {
+                timedOut.get(5, TimeUnit.SECONDS);
+                assertTrue(false, "response did not time out");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof WebServiceException
+                        && e.getCause().getCause() instanceof TimeoutException, "timeout failure: " + e);
+            }
+            assertTrue(handled.await(5, TimeUnit.SECONDS), "handler not called");
+            assertTrue(registry.getTimeoutCount() == 1, "timeouts: " + registry.getTimeoutCount());
+            assertTrue(!registry.complete("urn:timeout", "late") && !registry.complete(ids.get(0), "again")
+                    && registry.getLateArrivalCount() == 2, "late arrivals: " + registry.getLateArrivalCount());
+
+            // fault in response, cancelled request
+            Response<String> faulted = registry.register("urn:fault", 10, TimeUnit.SECONDS);
+            registry.fail("urn:fault", new WebServiceException("fault"));
+            try {
+                faulted.get();
+                assertTrue(false, "response did not fail");
+            } catch (ExecutionException e) {
+                assertTrue("fault".equals(e.getCause().getMessage()), "fault: " + e);
+            }
+            Response<String> cancelled = registry.register("urn:cancel", 10, TimeUnit.SECONDS);
+            assertTrue(cancelled.cancel(false) && !registry.complete("urn:cancel", "reply")
+                    && registry.getPendingCount() == 0, "cancelled request still pending");
+
+            // MessageID already pending
+            registry.register("urn:duplicate", 10, TimeUnit.SECONDS);
+            try {
+                registry.register("urn:duplicate", 10, TimeUnit.SECONDS);
+                assertTrue(false, "duplicate MessageID accepted");
+            } catch (IllegalArgumentException e) {
+                assertTrue(true, null);
+            }
+
+            // pending when closed
+            Response<String> unanswered = registry.register("urn:unanswered", 10, TimeUnit.SECONDS);
+            registry.close();
+            assertTrue(unanswered.isDone() && registry.getPendingCount() == 0, "pending request not failed by close");
+        } finally {
+            loopback.shutdownNow();
+        }
+    }
+
+    private static void assertTrue(boolean condition, String msg) {
+        if (!condition) {
+            System.out.println(" FAILED -  ERROR: " + msg);
+            throw new RuntimeException(msg);
+        } else {
+            System.out.println(" PASSED");
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package jaxws.test;
+
+import javax.xml.namespace.QName;
+import javax.xml.ws.Dispatch;
+import javax.xml.ws.DispatchPool;
+import javax.xml.ws.Service;
+import javax.xml.ws.handler.Handler;
+import javax.xml.ws.handler.MessageContext;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import jaxws.test.StubProvider.EchoDispatch;
+
+/**
+ * Tests DispatchPool against the dispatches of {@link StubProvider}.
+ */
+public class DispatchPoolTest {
+
+    private static final QName SERVICE = new QName("urn:test", "EchoService");
+    private static final QName PORT = new QName("urn:test", "EchoPort");
+
+    public static void main(String[] args) throws Exception {
+        borrowAndReturn();
+        timeout();
+        eviction();
+        close();
+        closeWhileWaiting();
+    }
+
+    // a returned dispatch is reused with its request context and handler chain restored
+    @SuppressWarnings("rawtypes")
+    private static void borrowAndReturn() throws Exception {
+        DispatchPool<String> pool = pool(2, 1, TimeUnit.MINUTES);
+        Dispatch<String> dispatch;
+        try (DispatchPool.Lease<String> lease = pool.borrow()) {
+            dispatch = lease.getDispatch();
+            assertTrue(pool.getLeasedCount() == 1 && pool.getIdleCount() == 0, counts(pool));
+            dispatch.getRequestContext().put("value", "a");
+            assertTrue("a".equals(dispatch.invoke("value")), "request context not used by the invocation");
+            List<Handler> chain = dispatch.getBinding().getHandlerChain();
+            chain.add(new NoopHandler());
+            dispatch.getBinding().setHandlerChain(chain);
+        }
+        assertTrue(pool.getLeasedCount() == 0 && pool.getIdleCount() == 1, counts(pool));
+
+        try (DispatchPool.Lease<String> lease = pool.borrow()) {
+            assertTrue(lease.getDispatch() == dispatch, "returned dispatch not reused");
+            assertTrue(dispatch.getRequestContext().get("value") == null, "request context not restored");
+            assertTrue(dispatch.getBinding().getHandlerChain().isEmpty(), "handler chain not restored");
+        }
+        pool.close();
+    }
+
+    // borrowing gives up when all the dispatches are leased for longer than the timeout
+    private static void timeout() throws Exception {
+        DispatchPool<String> pool = pool(1, 1, TimeUnit.MINUTES);
+        DispatchPool.Lease<String> lease = pool.borrow();
+        assertTrue(pool.borrow(10, TimeUnit.MILLISECONDS) == null, "borrowed beyond the maximum size");
+        lease.close();
+        DispatchPool.Lease<String> again = pool.borrow(10, TimeUnit.MILLISECONDS);
+        assertTrue(again != null, "returned dispatch not available");
+        again.close();
+        pool.close();
+    }
+
+    // dispatches idle for longer than the idle timeout are closed and replaced
+    private static void eviction() throws Exception {
+        DispatchPool<String> pool = pool(2, 1, TimeUnit.MILLISECONDS);
+        EchoDispatch<String> first;
+        try (DispatchPool.Lease<String> lease = pool.borrow()) {
+            first = (EchoDispatch<String>) lease.getDispatch();
+        }
+        Thread.sleep(20);
+        try (DispatchPool.Lease<String> lease = pool.borrow()) {
+            assertTrue(lease.getDispatch() != first, "idle dispatch not evicted");
+            assertTrue(first.isClosed(), "evicted dispatch not closed");
+        }
+        pool.close();
+    }
+
+    // closing discards the idle dispatches at once, the leased ones once returned
+    private static void close() throws Exception {
+        DispatchPool<String> pool = pool(2, 1, TimeUnit.MINUTES);
+        DispatchPool.Lease<String> leased = pool.borrow();
+        EchoDispatch<String> idle;
+        try (DispatchPool.Lease<String> lease = pool.borrow()) {
+            idle = (EchoDispatch<String>) lease.getDispatch();
+        }
+        pool.close();
+        assertTrue(idle.isClosed() && pool.getIdleCount() == 0, "idle dispatch not closed");
+        EchoDispatch<String> dispatch = (EchoDispatch<String>) leased.getDispatch();
+        assertTrue(!dispatch.isClosed(), "leased dispatch closed");
+        leased.close();
+        assertTrue(dispatch.isClosed() && pool.getIdleCount() == 0, "returned dispatch not closed");
+        try {
+            pool.borrow();
+            assertTrue(false, "borrowed from a closed pool");
+        } catch (IllegalStateException e) {
+            assertTrue(pool.getLeasedCount() == 0, counts(pool));
+        }
+    }
+
+    // a borrower waiting when the pool is closed fails once a dispatch is returned
+    private static void closeWhileWaiting() throws Exception {
+        DispatchPool<String> pool = pool(1, 1, TimeUnit.MINUTES);
+        DispatchPool.Lease<String> lease = pool.borrow();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<DispatchPool.Lease<String>> waiting = executor.submit(() -> pool.borrow());
+            Thread.sleep(50);
+            pool.close();
+            lease.close();
+            try {
+                waiting.get(10, TimeUnit.SECONDS);
+                assertTrue(false, "borrowed from a closed pool");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException, "unexpected failure: " + e.getCause());
+            }
+            assertTrue(pool.getLeasedCount() == 0, "permit not released: " + counts(pool));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static DispatchPool<String> pool(int maximumSize, long idleTimeout, TimeUnit unit) {
+        return new DispatchPool<String>(Service.create(SERVICE), PORT, String.class, Service.Mode.PAYLOAD,
+                maximumSize, idleTimeout, unit);
+    }
+
+    private static String counts(DispatchPool<?> pool) {
+        return "leased: " + pool.getLeasedCount() + ", idle: " + pool.getIdleCount();
+    }
+
+    private static final class NoopHandler implements Handler<MessageContext> {
+        @Override
+        public boolean handleMessage(MessageContext context) {
+            return true;
+        }
+
+        @Override
+        public boolean handleFault(MessageContext context) {
+            return true;
+        }
+
+        @Override
+        public void close(MessageContext context) {
+        }
+    }
+
+    private static void assertTrue(boolean condition, String msg) {
+        if (!condition) {
+            System.out.println(" FAILED -  ERROR: " + msg);
+            throw new RuntimeException(msg);
+        } else {
+            System.out.println(" PASSED");
+        }
+    }
+}
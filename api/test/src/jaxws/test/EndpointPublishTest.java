@@ -0,0 +1,108 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package jaxws.test;
+
+import javax.xml.ws.Endpoint;
+import javax.xml.ws.VirtualThreadsFeature;
+import javax.xml.ws.WebServiceException;
+import java.util.concurrent.ExecutorService;
+
+import jaxws.test.StubProvider.StubEndpoint;
+
+/**
+ * Tests the {@link VirtualThreadsFeature} handling of
+ * {@link Endpoint#publish(String, Object, javax.xml.ws.WebServiceFeature...)}
+ * against the endpoints of {@link StubProvider}.
+ */
+public class EndpointPublishTest {
+
+    public static void main(String[] args) {
+        if (VirtualThreadsFeature.isSupported()) {
+            published();
+            publishFailure();
+        } else {
+            unsupported();
+        }
+    }
+
+    // the executor outlives stop(), it is left to the application
+    private static void published() {
+        Endpoint endpoint = Endpoint.publish("http://localhost/echo", new Object(), new VirtualThreadsFeature());
+        assertTrue(endpoint.isPublished(), "endpoint not published");
+        ExecutorService executor = (ExecutorService) endpoint.getExecutor();
+        assertTrue(executor != null && !executor.isShutdown(), "virtual thread executor not set");
+        endpoint.stop();
+        assertTrue(!executor.isShutdown(), "executor shut down by stop()");
+        executor.shutdown();
+    }
+
+    // a failed publish stops the endpoint and shuts the executor down
+    private static void publishFailure() {
+        try {
+            Endpoint.publish("unusable:echo", new Object(), new VirtualThreadsFeature());
+            assertTrue(false, "published at an unusable address");
+        } catch (IllegalArgumentException e) {
+            StubEndpoint endpoint = StubProvider.ENDPOINT.get();
+            assertTrue(endpoint.isStopped(), "endpoint not stopped");
+            assertTrue(((ExecutorService) endpoint.getExecutor()).isShutdown(), "executor not shut down");
+        }
+    }
+
+    // without virtual threads, publishing fails before an endpoint is created
+    private static void unsupported() {
+        try {
+            Endpoint.publish("http://localhost/echo", new Object(), new VirtualThreadsFeature());
+            assertTrue(false, "published with virtual threads unsupported");
+        } catch (WebServiceException e) {
+            assertTrue(StubProvider.ENDPOINT.get() == null, "endpoint created");
+        }
+        Endpoint endpoint = Endpoint.publish("http://localhost/echo", new Object(), new VirtualThreadsFeature(false));
+        assertTrue(endpoint.isPublished() && endpoint.getExecutor() == null, "disabled feature not ignored");
+    }
+
+    private static void assertTrue(boolean condition, String msg) {
+        if (!condition) {
+            System.out.println(" FAILED -  ERROR: " + msg);
+            throw new RuntimeException(msg);
+        } else {
+            System.out.println(" PASSED");
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package jaxws.test;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.ws.wsaddressing.CompactElement;
+import javax.xml.ws.wsaddressing.W3CEndpointReference;
+import javax.xml.ws.wsaddressing.W3CEndpointReferenceBuilder;
+import javax.xml.ws.wsaddressing.W3CEndpointReferenceTemplate;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the binary form of W3CEndpointReference against its XML form:
+ * EPR read back from the binary form must serialize to the same binary
+ * form and to the same XML as the original one, and be equal to it.
+ * Also tests the compact form of the EPR elements against DOM.
+ */
+public class EndpointReferenceRoundTrip {
+
+    private static final String[] EPRS = {
+            "<EndpointReference xmlns='http://www.w3.org/2005/08/addressing'>" +
+                    "<Address>http://www.w3.org/2005/08/addressing/anonymous</Address>" +
+                    "</EndpointReference>",
+
+            "<wsa:EndpointReference xmlns:wsa='http://www.w3.org/2005/08/addressing' xmlns:q='urn:q' q:a='1'>" +
+                    "<wsa:Address q:b='2'>http://localhost:8080/service?x=1&amp;y=2</wsa:Address>" +
+                    "<wsa:ReferenceParameters>" +
+                    "<s:SessionId xmlns:s='urn:session' z='last' a='first'>4<![CDATA[2<]]>\u00e9\u4e2d</s:SessionId>" +
+                    "<s:Nested xmlns:s='urn:session'><s:in xml:lang='en'/><?pi data?><!-- dropped --></s:Nested>" +
+                    "</wsa:ReferenceParameters>" +
+                    "<wsa:Metadata xmlns:wsam='http://www.w3.org/2007/05/addressing/metadata'>" +
+                    "<wsam:ServiceName xmlns:t='urn:t' EndpointName='t:Port'>t:Service</wsam:ServiceName>" +
+                    "</wsa:Metadata>" +
+                    "<plain>no namespace</plain>" +
+                    "<q:ext xmlns='urn:default'><inner/></q:ext>" +
+                    "</wsa:EndpointReference>",
+
+            "<EndpointReference xmlns='http://www.w3.org/2005/08/addressing'/>"
+    };
+
+    public static void main(String[] args) {
+        for (String xml : EPRS) {
+            try {
+                W3CEndpointReference epr = new W3CEndpointReference(new StreamSource(new StringReader(xml)));
+                byte[] binary = toBinary(epr);
+                W3CEndpointReference copy = W3CEndpointReference.readFrom(
+                        new DataInputStream(new ByteArrayInputStream(binary)));
+
+                assertTrue(Arrays.equals(binary, toBinary(copy)), "binary form differs after round trip: " + xml);
+                assertTrue(epr.toString().equals(copy.toString()), "XML form differs after round trip: " + xml);
+                assertTrue(epr.equals(copy) && epr.hashCode() == copy.hashCode(),
+                        "EPR not equal after round trip: " + xml);
+                assertTrue(epr.intern() == copy.intern(), "equal EPRs interned to different instances: " + xml);
+
+                // namespaces in scope are declared on extension elements when read from XML,
+                // so both need to go through XML to compare their binary forms
+                assertTrue(Arrays.equals(toBinary(reparse(epr)), toBinary(reparse(copy))),
+                        "binary form differs from XML form: " + xml);
+                // declarations added when read from XML are not significant
+                assertTrue(epr.equals(reparse(copy)), "EPR not equal to its XML form: " + xml);
+                assertTrue(binary.length < epr.toString().getBytes("UTF-8").length,
+                        "binary form not smaller than XML: " + xml);
+
+                // through JAXB and DOM, which add declarations of their own
+                DOMResult result = new DOMResult();
+                epr.writeTo(result);
+                W3CEndpointReference dom = new W3CEndpointReference(new DOMSource(result.getNode()));
+                assertTrue(epr.equals(dom) && epr.hashCode() == dom.hashCode(),
+                        "EPR not equal after DOM round trip: " + xml + " " + dom);
+                assertTrue(epr.intern() == dom.intern(), "EPR interned apart from its DOM form: " + xml);
+            } catch (IOException e) {
+                e.printStackTrace();
+                assertTrue(false, "unexpected exception: " + e);
+            }
+        }
+
+        // reference parameters are available without DOM, and the same once converted to DOM and back
+        W3CEndpointReference epr = new W3CEndpointReference(new StreamSource(new StringReader(EPRS[1])));
+        assertTrue("http://localhost:8080/service?x=1&y=2".equals(epr.getAddress()), "address: " + epr.getAddress());
+        assertTrue(epr.getReferenceParameters().size() == 2 && epr.getMetadata().size() == 1
+                && epr.getElements().size() == 2, "number of elements: " + epr);
+        for (CompactElement element : epr.getReferenceParameters()) {
+            CompactElement copy = CompactElement.of(element.toElement());
+            assertTrue(element.equals(copy) && element.getName().equals(copy.getName()),
+                    "compact element differs after DOM round trip: " + element + " " + copy);
+        }
+        assertTrue(!epr.getReferenceParameters().get(1).toXml().contains("dropped"), "comment kept");
+
+        // qualified names in content keep their namespace, wherever it is declared
+        W3CEndpointReference one = serviceName("", "<wsam:ServiceName xmlns:t='urn:one'>t:Svc</wsam:ServiceName>");
+        W3CEndpointReference two = serviceName("", "<wsam:ServiceName xmlns:t='urn:two'>t:Svc</wsam:ServiceName>");
+        W3CEndpointReference oneAbove = serviceName(" xmlns:t='urn:one'", "<wsam:ServiceName>t:Svc</wsam:ServiceName>");
+        assertTrue(!one.equals(two), "EPRs with QName content in different namespaces equal");
+        assertTrue(one.intern() != two.intern(), "EPRs with QName content in different namespaces interned together");
+        assertTrue(one.equals(oneAbove) && one.hashCode() == oneAbove.hashCode(),
+                "EPRs differing in where the namespace is declared not equal");
+        assertTrue(one.intern() == oneAbove.intern(), "equal EPRs interned to different instances");
+
+        try {
+            W3CEndpointReference.readFrom(new DataInputStream(new ByteArrayInputStream(new byte[] {1, 2, 3, 4})));
+            assertTrue(false, "invalid binary form accepted");
+        } catch (IOException e) {
+            assertTrue(true, null);
+        }
+        truncated();
+        template();
+    }
+
+    // EPRs built from a template are the ones the builder builds, and don't share mutable state
+    private static void template() {
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            document = factory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+        Element metadata = document.createElementNS("urn:m", "m:Policy");
+        Element session = document.createElementNS("urn:s", "s:SessionId");
+        session.setTextContent("42");
+
+        W3CEndpointReferenceBuilder builder = new W3CEndpointReferenceBuilder()
+                .address("http://localhost:8080/service")
+                .metadata(metadata)
+                .attribute(new QName("urn:q", "a", "q"), "1");
+        W3CEndpointReferenceTemplate template = builder.template();
+        W3CEndpointReference built = template.build(session);
+        W3CEndpointReference direct = builder.referenceParameter(session).build();
+        assertTrue(built.equals(direct) && built.hashCode() == direct.hashCode(),
+                "EPR built from template not equal to the one built directly: " + built + " " + direct);
+        assertTrue(built.toString().equals(direct.toString()),
+                "EPR built from template serialized differently: " + built + " " + direct);
+
+        // the template keeps its own copy of the builder elements, the EPRs their own parameters
+        String base = template.build().toString();
+        metadata.setAttributeNS("urn:m", "m:changed", "yes");
+        session.setTextContent("43");
+        builder.referenceParameter(document.createElementNS("urn:s", "s:Other"));
+        assertTrue(template.build().toString().equals(base), "template changed with the builder: " + template.build());
+        assertTrue(built.toString().equals(direct.toString()) && built.toString().contains(">42<"),
+                "EPR built from template changed with its reference parameter: " + built);
+
+        // siblings built with other attributes and parameters don't affect each other or the template
+        Map<QName, String> attributes = new HashMap<QName, String>();
+        attributes.put(new QName("urn:q", "a", "q"), "2");
+        W3CEndpointReference sibling = template.build(Collections.singletonList(session), attributes);
+        attributes.put(new QName("urn:q", "a", "q"), "3");
+        assertTrue("2".equals(sibling.getAttributes().get(new QName("urn:q", "a"))),
+                "EPR built from template changed with its attributes: " + sibling);
+        assertTrue("1".equals(built.getAttributes().get(new QName("urn:q", "a")))
+                && "1".equals(template.build().getAttributes().get(new QName("urn:q", "a"))),
+                "attributes of a sibling changed the template: " + template.build());
+        assertTrue(template.build().getReferenceParameters().isEmpty() && built.getReferenceParameters().size() == 1,
+                "reference parameters of a sibling changed the template: " + template.build());
+        built.getReferenceParameters().get(0).toElement().setTextContent("44");
+        assertTrue(built.toString().contains(">42<") && sibling.toString().contains(">43<"),
+                "EPR built from template changed with an element of its reference parameter: " + built);
+        try {
+            built.getReferenceParameters().clear();
+            assertTrue(false, "reference parameters of an EPR built from template modifiable");
+        } catch (UnsupportedOperationException e) {
+            assertTrue(sibling.getReferenceParameters().size() == 1, "reference parameters shared");
+        }
+    }
+
+    // a string size beyond the end of the input fails as an IOException, without allocating for it
+    private static void truncated() {
+        try {
+            byte[] binary = toBinary(new W3CEndpointReference(new StreamSource(new StringReader(EPRS[0]))));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            // magic, no attributes, an address without attributes
+            bytes.write(binary, 0, 4);
+            bytes.write(new byte[] {0, 1, 0});
+            // address of Integer.MAX_VALUE - 1 bytes, three given
+            bytes.write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a', 'b', 'c'});
+            W3CEndpointReference.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            assertTrue(false, "truncated binary form accepted");
+        } catch (IOException e) {
+            assertTrue(true, null);
+        } catch (OutOfMemoryError e) {
+            assertTrue(false, "size of truncated binary form trusted: " + e);
+        }
+    }
+
+    private static W3CEndpointReference serviceName(String metadataDeclarations, String serviceName) {
+        return new W3CEndpointReference(new StreamSource(new StringReader(
+                "<wsa:EndpointReference xmlns:wsa='http://www.w3.org/2005/08/addressing'>" +
+                "<wsa:Address>http://localhost:8080/service</wsa:Address>" +
+                "<wsa:Metadata xmlns:wsam='http://www.w3.org/2007/05/addressing/metadata'" +
+                metadataDeclarations + ">" + serviceName + "</wsa:Metadata>" +
+                "</wsa:EndpointReference>")));
+    }
+
+    private static W3CEndpointReference reparse(W3CEndpointReference epr) {
+        return new W3CEndpointReference(new StreamSource(new StringReader(epr.toString())));
+    }
+
+    private static byte[] toBinary(W3CEndpointReference epr) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        epr.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void assertTrue(boolean condition, String msg) {
+        if (!condition) {
+            System.out.println(" FAILED -  ERROR: " + msg);
+            throw new RuntimeException(msg);
+        } else {
+            System.out.println(" PASSED");
+        }
+    }
+}
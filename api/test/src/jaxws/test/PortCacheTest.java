@@ -0,0 +1,316 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package jaxws.test;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.PortCache;
+import javax.xml.ws.Service;
+import javax.xml.ws.WebServiceFeature;
+import javax.xml.ws.soap.AddressingFeature;
+import javax.xml.ws.wsaddressing.W3CEndpointReference;
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import jaxws.test.StubProvider.Echo;
+
+/**
+ * Tests PortCache against the ports of {@link StubProvider}.
+ */
+public class PortCacheTest {
+
+    private static final WebServiceFeature ADDRESSING = new AddressingFeature();
+
+    public static void main(String[] args) {
+        counts();
+        features();
+        contexts();
+        pooledThread();
+        concurrentInvocations();
+        burst();
+        eviction();
+        sharedPort();
+    }
+
+    // hits, misses and evictions, EPRs compared structurally
+    private static void counts() {
+        PortCache cache = new PortCache(2);
+        Echo one = cache.getPort(epr("one"), Echo.class);
+        assertTrue(cache.getPort(epr("one"), Echo.class) == one, "equal EPR not cached");
+        assertTrue(cache.getHitCount() == 1 && cache.getMissCount() == 1, counts(cache));
+
+        cache.getPort(epr("two"), Echo.class);
+        cache.getPort(epr("three"), Echo.class);
+        assertTrue(cache.size() == 2 && cache.getEvictionCount() == 1 && cache.getMissCount() == 3, counts(cache));
+
+        // the least recently used one was evicted
+        assertTrue(cache.getPort(epr("one"), Echo.class) != one, "evicted port returned");
+        assertTrue(cache.getHitCount() == 1 && cache.getMissCount() == 4 && cache.getEvictionCount() == 2,
+                counts(cache));
+        assertTrue(cache.getPort(epr("three"), Echo.class) != null && cache.getHitCount() == 2, counts(cache));
+
+        cache.clear();
+        assertTrue(cache.size() == 0 && cache.getHitCount() == 2, "counts not kept on clear: " + counts(cache));
+    }
+
+    // features make a key by identity
+    private static void features() {
+        PortCache cache = new PortCache(10);
+        Echo port = cache.getPort(epr("one"), Echo.class, ADDRESSING);
+        assertTrue(cache.getPort(epr("one"), Echo.class, ADDRESSING) == port, "same feature instance not cached");
+        assertTrue(cache.getPort(epr("one"), Echo.class, new AddressingFeature()) != port,
+                "equal feature instance shares port");
+        assertTrue(cache.getPort(epr("one"), Echo.class) != port, "port without features shares port");
+        assertTrue(cache.getHitCount() == 1 && cache.getMissCount() == 3, counts(cache));
+    }
+
+    // the request context is set up by the initializer and reset by each invocation
+    private static void contexts() {
+        PortCache cache = new PortCache(10, port -> port.getRequestContext().put("initialized", "yes"));
+        Echo echo = cache.getPort(epr("one"), Echo.class);
+        Map<String, Object> requestContext = ((BindingProvider) echo).getRequestContext();
+        assertTrue("yes".equals(requestContext.get("initialized")), "request context not initialized");
+
+        requestContext.put("value", "a");
+        assertTrue("a".equals(echo.echo("value")), "request context not used by the invocation");
+        assertTrue("yes".equals(echo.echo("initialized")), "initial request context not used by the invocation");
+        assertTrue(echo.echo("value") == null, "request context not reset by the invocation");
+        assertTrue(((BindingProvider) echo).getRequestContext().get("value") == null, "request context not reset");
+
+        ((BindingProvider) echo).getRequestContext().put("value", "b");
+        echo.echo("value");
+        assertTrue("b".equals(((BindingProvider) echo).getResponseContext().get("echo")),
+                "response context of the invocation not returned");
+    }
+
+    // a task run by a pooled thread doesn't see the contexts of the previous invocation
+    private static void pooledThread() {
+        PortCache cache = new PortCache(10);
+        Echo echo = cache.getPort(epr("pooled"), Echo.class);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                ((BindingProvider) echo).getRequestContext().put("value", "first task");
+                return echo.echo("value");
+            }).get();
+            String value = executor.submit(() -> echo.echo("value")).get();
+            assertTrue(value == null, "request context of the previous task used: " + value);
+            Object response = executor.submit(() -> ((BindingProvider) echo).getResponseContext().get("echo")).get();
+            assertTrue(response == null, "response context not the one of the last invocation: " + response);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // concurrent invocations use their own request contexts and ports, the ports are reused
+    private static void concurrentInvocations() {
+        int threads = 4;
+        PortCache cache = new PortCache(10);
+        Echo echo = cache.getPort(epr("concurrent"), Echo.class);
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        int ports = StubProvider.PORTS.get();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int t = 0; t < threads; t++) {
+                String name = "thread " + t;
+                results.add(executor.submit(() -> {
+                    barrier.await();
+                    for (int i = 0; i < 1000; i++) {
+                        String value = name + ", invocation " + i;
+                        ((BindingProvider) echo).getRequestContext().put("value", value);
+                        if (!value.equals(echo.echo("value"))
+                                || !value.equals(((BindingProvider) echo).getResponseContext().get("echo"))) {
+                            return value;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<String> result : results) {
+                String failed = result.get();
+                assertTrue(failed == null, "contexts of " + failed + " not isolated");
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+        int created = StubProvider.PORTS.get() - ports;
+        assertTrue(created <= threads, "ports not reused: " + created + " created for " + threads + " threads");
+    }
+
+    // a burst of concurrent invocations creates a port each, only some of them are kept idle
+    private static void burst() {
+        int threads = 2 * Runtime.getRuntime().availableProcessors() + 8;
+        PortCache cache = new PortCache(10);
+        Echo echo = cache.getPort(epr("burst"), Echo.class);
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        StubProvider.ON_ECHO.set(() -> {
+            try {
+                // all the invocations hold a port at the same time
+                barrier.await(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            int ports = StubProvider.PORTS.get();
+            invokeAll(executor, echo, threads);
+            int first = StubProvider.PORTS.get() - ports;
+            assertTrue(first == threads - 1, first + " ports created for " + threads + " concurrent invocations");
+
+            ports = StubProvider.PORTS.get();
+            invokeAll(executor, echo, threads);
+            int second = StubProvider.PORTS.get() - ports;
+            assertTrue(second > 0, "all the ports of the burst kept idle");
+            assertTrue(second < threads, "idle ports not reused: " + second + " created");
+        } finally {
+            StubProvider.ON_ECHO.set(null);
+            executor.shutdown();
+        }
+    }
+
+    private static void invokeAll(ExecutorService executor, Echo echo, int threads) {
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int t = 0; t < threads; t++) {
+                String value = "thread " + t;
+                results.add(executor.submit(() -> {
+                    ((BindingProvider) echo).getRequestContext().put("value", value);
+                    return value.equals(echo.echo("value")) ? null : value;
+                }));
+            }
+            for (Future<String> result : results) {
+                String failed = result.get();
+                assertTrue(failed == null, "contexts of " + failed + " not isolated");
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // an evicted proxy releases the contexts pooled threads keep for it, and keeps working
+    private static void eviction() {
+        PortCache cache = new PortCache(1);
+        Echo echo = cache.getPort(epr("evicted"), Echo.class);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            WeakReference<Object> value = executor.submit(() -> {
+                Object kept = new Object();
+                ((BindingProvider) echo).getRequestContext().put("value", kept);
+                echo.echo("other");
+                // set up for an invocation the task doesn't make
+                ((BindingProvider) echo).getRequestContext().put("value", kept);
+                return new WeakReference<Object>(kept);
+            }).get();
+
+            cache.getPort(epr("other"), Echo.class);
+            assertTrue(cache.getEvictionCount() == 1, counts(cache));
+            boolean released = executor.submit(() -> ((BindingProvider) echo).getRequestContext().get("value") == null
+                    && ((BindingProvider) echo).getResponseContext().isEmpty()).get();
+            assertTrue(released, "contexts of the pooled thread kept by the evicted proxy");
+            for (int i = 0; i < 50 && value.get() != null; i++) {
+                System.gc();
+                Thread.sleep(20);
+            }
+            assertTrue(value.get() == null, "context value of the pooled thread still referenced");
+
+            String result = executor.submit(() -> {
+                ((BindingProvider) echo).getRequestContext().put("value", "after eviction");
+                return echo.echo("value");
+            }).get();
+            assertTrue("after eviction".equals(result), "evicted proxy not usable: " + result);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // without caching by the runtime, getSharedPort returns a new port from getPort, with its own contexts
+    private static void sharedPort() {
+        Service service = Service.create(new QName("urn:test", "EchoService"));
+        int ports = StubProvider.PORTS.get();
+        Echo one = service.getSharedPort(Echo.class);
+        Echo two = service.getSharedPort(new QName("urn:test", "EchoPort"), Echo.class, ADDRESSING);
+        assertTrue(one != null && two != null && one != two, "shared ports not created by getPort");
+        assertTrue(StubProvider.PORTS.get() - ports == 2, "ports created: " + (StubProvider.PORTS.get() - ports));
+
+        ((BindingProvider) one).getRequestContext().put("value", "one");
+        assertTrue(two.echo("value") == null, "request context shared between ports");
+        assertTrue("one".equals(one.echo("value")), "request context not used by the invocation");
+        assertTrue(((BindingProvider) two).getResponseContext().get("echo") == null,
+                "response context shared between ports");
+    }
+
+    private static W3CEndpointReference epr(String path) {
+        return new W3CEndpointReference(new StreamSource(new StringReader(
+                "<EndpointReference xmlns='http://www.w3.org/2005/08/addressing'>" +
+                "<Address>http://localhost:8080/" + path + "</Address>" +
+                "</EndpointReference>")));
+    }
+
+    private static String counts(PortCache cache) {
+        return "size: " + cache.size() + ", hits: " + cache.getHitCount() + ", misses: " + cache.getMissCount()
+                + ", evictions: " + cache.getEvictionCount();
+    }
+
+    private static void assertTrue(boolean condition, String msg) {
+        if (!condition) {
+            System.out.println(" FAILED -  ERROR: " + msg);
+            throw new RuntimeException(msg);
+        } else {
+            System.out.println(" PASSED");
+        }
+    }
+}
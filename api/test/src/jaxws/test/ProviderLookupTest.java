@@ -0,0 +1,200 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package jaxws.test;
+
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.spi.Provider;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the caching of Provider.provider() lookups and their invalidation.
+ */
+public class ProviderLookupTest {
+
+    private static final String PROPERTY = "javax.xml.ws.spi.Provider";
+
+    public static void main(String[] args) throws Exception {
+        invalidate();
+        jdkProperties();
+        index();
+        recentMiss();
+        prewarm();
+    }
+
+    // a cached provider is returned until invalidated, then looked up again
+    private static void invalidate() {
+        ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        System.setProperty(PROPERTY, "jaxws.factory.Valid");
+        Provider.invalidateAll();
+
+        Provider first = Provider.provider();
+        assertTrue(first.getClass().getName().equals("jaxws.factory.Valid"), "provider: " + first.getClass());
+        assertTrue(Provider.provider() == first, "cached provider not reused");
+
+        // still cached while not invalidated
+        System.setProperty(PROPERTY, "jaxws.factory.Valid2");
+        assertTrue(Provider.provider() == first, "lookup repeated without invalidation");
+
+        Provider.invalidate(tccl);
+        Provider second = Provider.provider();
+        assertTrue(second.getClass().getName().equals("jaxws.factory.Valid2"), "provider after invalidate: " + second.getClass());
+        assertTrue(Provider.provider() == second, "new provider not cached");
+
+        System.setProperty(PROPERTY, "jaxws.factory.Valid3");
+        Provider.invalidateAll();
+        Provider third = Provider.provider();
+        assertTrue(third.getClass().getName().equals("jaxws.factory.Valid3"), "provider after invalidateAll: " + third.getClass());
+
+        System.clearProperty(PROPERTY);
+        Provider.invalidateAll();
+    }
+
+    // a missing jaxws.properties is remembered until invalidateAll(), a removed one is noticed
+    private static void jdkProperties() throws IOException {
+        ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        File conf = new File(System.getProperty("java.home"), "conf");
+        File file = new File(conf.isDirectory() ? conf : new File(System.getProperty("java.home"), "lib"),
+                "jaxws.properties");
+        Provider.invalidateAll();
+        String missing = Provider.provider().getClass().getName();
+        assertTrue(!missing.equals("jaxws.factory.Valid2"), "provider without jaxws.properties: " + missing);
+
+        try {
+            try (Writer writer = new FileWriter(file)) {
+                writer.write(PROPERTY + "=jaxws.factory.Valid2\n");
+            }
+            Provider.invalidate(tccl);
+            String remembered = Provider.provider().getClass().getName();
+            assertTrue(remembered.equals(missing), "missing jaxws.properties probed again: " + remembered);
+            Provider.invalidateAll();
+            String created = Provider.provider().getClass().getName();
+            assertTrue(created.equals("jaxws.factory.Valid2"), "provider from created jaxws.properties: " + created);
+        } finally {
+            file.delete();
+        }
+        Provider.invalidate(tccl);
+        String removed = Provider.provider().getClass().getName();
+        assertTrue(removed.equals(missing), "provider after jaxws.properties removed: " + removed);
+    }
+
+    // a provider index created after a lookup is read once invalidated
+    private static void index() throws IOException {
+        ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        File index = new File("META-INF/jaxws.index");
+        Provider.invalidateAll();
+        String missing = Provider.provider().getClass().getName();
+
+        try {
+            index.getParentFile().mkdirs();
+            try (Writer writer = new FileWriter(index)) {
+                writer.write(PROPERTY + "=jaxws.factory.Valid3\n");
+            }
+            Provider.invalidate(tccl);
+            String created = Provider.provider().getClass().getName();
+            assertTrue(created.equals("jaxws.factory.Valid3"), "provider from created index: " + created);
+        } finally {
+            index.delete();
+        }
+        Provider.invalidate(tccl);
+        String removed = Provider.provider().getClass().getName();
+        assertTrue(removed.equals(missing), "provider after index removed: " + removed);
+    }
+
+    // a failed lookup repeated shortly after fails with a new exception caused by the first
+    private static void recentMiss() {
+        System.setProperty(PROPERTY, "non.existing.FactoryClass");
+        Provider.invalidateAll();
+        WebServiceException first = lookupFailure();
+        WebServiceException second = lookupFailure();
+        assertTrue(first != null && second != null, "lookup of non existing provider succeeded");
+        assertTrue(second != first, "failure instance shared between lookups");
+        assertTrue(second.getCause() == first, "repeated failure not caused by the first one: " + second.getCause());
+
+        System.clearProperty(PROPERTY);
+        Provider.invalidateAll();
+    }
+
+    // prewarming creates the JAXB context of W3CEndpointReference, which reading from a stream doesn't
+    private static void prewarm() throws Exception {
+        Field context = Class.forName("javax.xml.ws.wsaddressing.W3CEndpointReference$JaxbContextHolder")
+                .getDeclaredField("context");
+        context.setAccessible(true);
+        System.setProperty(PROPERTY, "jaxws.factory.Valid");
+        Provider.invalidateAll();
+        assertTrue(context.get(null) == null, "JAXB context created before prewarm");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Provider provider = Provider.prewarm(executor).get(30, TimeUnit.SECONDS);
+            assertTrue(provider == Provider.provider(), "prewarmed provider not cached: " + provider);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(context.get(null) != null, "JAXB context not created by prewarm");
+
+        System.clearProperty(PROPERTY);
+        Provider.invalidateAll();
+    }
+
+    private static WebServiceException lookupFailure() {
+        try {
+            Provider.provider();
+            return null;
+        } catch (WebServiceException e) {
+            return e;
+        }
+    }
+
+    private static void assertTrue(boolean condition, String msg) {
+        if (!condition) {
+            System.out.println(" FAILED -  ERROR: " + msg);
+            throw new RuntimeException(msg);
+        } else {
+            System.out.println(" PASSED");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package jaxws.test;
+
+import javax.xml.namespace.QName;
+import javax.xml.ws.Service;
+import javax.xml.ws.ServiceCache;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests {@link ServiceCache} against the service delegates of
+ * {@link StubProvider}.
+ */
+public class ServiceCacheTest {
+
+    private static final QName SERVICE = new QName("urn:test", "EchoService");
+    private static final QName OTHER = new QName("urn:test", "OtherService");
+    private static final QName THIRD = new QName("urn:test", "ThirdService");
+
+    public static void main(String[] args) throws Exception {
+        hitAndMiss();
+        race();
+        eviction();
+    }
+
+    // a cached service is returned to each caller, a new one created for other arguments
+    private static void hitAndMiss() {
+        ServiceCache cache = new ServiceCache(4);
+        int created = StubProvider.DELEGATES.get();
+        Service first = cache.getService(null, SERVICE);
+        Service second = cache.getService(null, SERVICE);
+        assertTrue(first == second, "cached service not returned");
+        assertTrue(cache.getHitCount() == 1 && cache.getMissCount() == 1,
+                "hits " + cache.getHitCount() + ", misses " + cache.getMissCount());
+        assertTrue(StubProvider.DELEGATES.get() == created + 1, "service created for a hit");
+
+        Service other = cache.getService(null, OTHER);
+        assertTrue(other != first && cache.size() == 2 && cache.getMissCount() == 2, "other service cached");
+        assertTrue(cache.getEvictionCount() == 0, "evicted below the maximum size");
+    }
+
+    // of two callers missing concurrently, one gets the service of the other and closes its own
+    private static void race() throws Exception {
+        final ServiceCache cache = new ServiceCache(4);
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        int closed = StubProvider.CLOSED_DELEGATES.get();
+        StubProvider.ON_DELEGATE.set(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // both creations start before either is cached
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<Service> get = new Callable<Service>() {
+                @Override
+                public Service call() {
+                    return cache.getService(null, SERVICE);
+                }
+            };
+            Future<Service> first = executor.submit(get);
+            Future<Service> second = executor.submit(get);
+            assertTrue(first.get() == second.get(), "different services returned");
+        } finally {
+            StubProvider.ON_DELEGATE.set(null);
+            executor.shutdown();
+        }
+        assertTrue(cache.getMissCount() == 2 && cache.size() == 1, "misses " + cache.getMissCount());
+        assertTrue(StubProvider.CLOSED_DELEGATES.get() == closed + 1, "service of the losing caller not closed");
+        cache.getService(null, SERVICE);
+        assertTrue(StubProvider.CLOSED_DELEGATES.get() == closed + 1, "cached service closed");
+    }
+
+    // the least recently used service is evicted, without being closed
+    private static void eviction() {
+        ServiceCache cache = new ServiceCache(2);
+        int closed = StubProvider.CLOSED_DELEGATES.get();
+        Service first = cache.getService(null, SERVICE);
+        Service other = cache.getService(null, OTHER);
+        cache.getService(null, SERVICE);
+        cache.getService(null, THIRD);
+        assertTrue(cache.size() == 2 && cache.getEvictionCount() == 1,
+                "size " + cache.size() + ", evictions " + cache.getEvictionCount());
+        assertTrue(cache.getService(null, SERVICE) == first, "recently used service evicted");
+        assertTrue(cache.getService(null, OTHER) != other, "least recently used service not evicted");
+        assertTrue(StubProvider.CLOSED_DELEGATES.get() == closed, "evicted service closed");
+
+        cache.clear();
+        assertTrue(cache.size() == 0 && cache.getService(null, SERVICE) != first, "services not cleared");
+        assertTrue(StubProvider.CLOSED_DELEGATES.get() == closed, "cleared service closed");
+    }
+
+    private static void assertTrue(boolean condition, String msg) {
+        if (!condition) {
+            System.out.println(" FAILED -  ERROR: " + msg);
+            throw new RuntimeException(msg);
+        } else {
+            System.out.println(" PASSED");
+        }
+    }
+}
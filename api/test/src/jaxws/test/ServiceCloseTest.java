@@ -0,0 +1,109 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package jaxws.test;
+
+import javax.xml.namespace.QName;
+import javax.xml.ws.Service;
+import javax.xml.ws.VirtualThreadsFeature;
+import javax.xml.ws.WebServiceException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests {@link Service#close()} against the service delegates of
+ * {@link StubProvider}.
+ */
+public class ServiceCloseTest {
+
+    private static final QName SERVICE = new QName("urn:test", "EchoService");
+
+    public static void main(String[] args) {
+        close();
+        if (VirtualThreadsFeature.isSupported()) {
+            virtualThreads();
+        } else {
+            unsupported();
+        }
+    }
+
+    // close() reaches the delegate
+    private static void close() {
+        int closed = StubProvider.CLOSED_DELEGATES.get();
+        Service service = Service.create(SERVICE);
+        service.close();
+        assertTrue(StubProvider.CLOSED_DELEGATES.get() == closed + 1, "delegate not closed");
+    }
+
+    // the executor created for the feature is shut down, one set by the application is not
+    private static void virtualThreads() {
+        Service service = Service.create(SERVICE, new VirtualThreadsFeature());
+        ExecutorService executor = (ExecutorService) service.getExecutor();
+        assertTrue(executor != null && !executor.isShutdown(), "virtual thread executor not set");
+        service.close();
+        assertTrue(executor.isShutdown(), "virtual thread executor not shut down");
+
+        Service owned = Service.create(SERVICE);
+        ExecutorService application = Executors.newSingleThreadExecutor();
+        owned.setExecutor(application);
+        owned.close();
+        assertTrue(!application.isShutdown(), "executor of the application shut down");
+        application.shutdown();
+    }
+
+    // without virtual threads, creating the service fails before a delegate is created
+    private static void unsupported() {
+        int created = StubProvider.DELEGATES.get();
+        try {
+            Service.create(SERVICE, new VirtualThreadsFeature());
+            assertTrue(false, "created with virtual threads unsupported");
+        } catch (WebServiceException e) {
+            assertTrue(StubProvider.DELEGATES.get() == created, "delegate created");
+        }
+    }
+
+    private static void assertTrue(boolean condition, String msg) {
+        if (!condition) {
+            System.out.println(" FAILED -  ERROR: " + msg);
+            throw new RuntimeException(msg);
+        } else {
+            System.out.println(" PASSED");
+        }
+    }
+}
@@ -0,0 +1,563 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package jaxws.test;
+
+import org.w3c.dom.Element;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
+import javax.xml.ws.AsyncHandler;
+import javax.xml.ws.Binding;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.Dispatch;
+import javax.xml.ws.Endpoint;
+import javax.xml.ws.EndpointReference;
+import javax.xml.ws.Response;
+import javax.xml.ws.Service;
+import javax.xml.ws.WebServiceFeature;
+import javax.xml.ws.handler.Handler;
+import javax.xml.ws.handler.HandlerResolver;
+import javax.xml.ws.spi.Provider;
+import javax.xml.ws.spi.ServiceDelegate;
+import javax.xml.ws.wsaddressing.W3CEndpointReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Provider standing in for a JAX-WS runtime in the tests of the API
+ * classes built on top of it: the ports are {@link Echo} stubs, the
+ * dispatches {@link EchoDispatch} stubs.
+ */
+public class StubProvider extends Provider {
+
+    /**
+     * Service endpoint interface of the stub ports.
+     */
+    public interface Echo {
+
+        /**
+         * Returns the value of given request context property, also
+         * set as the {@code echo} property of the response context.
+         */
+        String echo(String property);
+    }
+
+    /**
+     * Number of ports created.
+     */
+    public static final AtomicInteger PORTS = new AtomicInteger();
+
+    /**
+     * Number of dispatches created and closed.
+     */
+    public static final AtomicInteger DISPATCHES = new AtomicInteger();
+    public static final AtomicInteger CLOSED_DISPATCHES = new AtomicInteger();
+
+    /**
+     * Number of service delegates created and closed.
+     */
+    public static final AtomicInteger DELEGATES = new AtomicInteger();
+    public static final AtomicInteger CLOSED_DELEGATES = new AtomicInteger();
+
+    /**
+     * Run by each service delegate created, e.g. to make concurrent
+     * creations meet.
+     */
+    public static final AtomicReference<Runnable> ON_DELEGATE = new AtomicReference<Runnable>();
+
+    /**
+     * Run by each invocation of a stub port, e.g. to make concurrent
+     * invocations meet.
+     */
+    public static final AtomicReference<Runnable> ON_ECHO = new AtomicReference<Runnable>();
+
+    /**
+     * Last endpoint created.
+     */
+    public static final AtomicReference<StubEndpoint> ENDPOINT = new AtomicReference<StubEndpoint>();
+
+    @Override
+    public <T> T getPort(EndpointReference endpointReference, Class<T> serviceEndpointInterface,
+                         WebServiceFeature... features) {
+        return port(serviceEndpointInterface);
+    }
+
+    static <T> T port(Class<T> serviceEndpointInterface) {
+        PORTS.incrementAndGet();
+        return serviceEndpointInterface.cast(Proxy.newProxyInstance(StubProvider.class.getClassLoader(),
+                new Class<?>[]{serviceEndpointInterface, BindingProvider.class}, new EchoPort()));
+    }
+
+    private static final class EchoPort implements InvocationHandler {
+        private final Map<String, Object> requestContext = new HashMap<String, Object>();
+        private final Map<String, Object> responseContext = new HashMap<String, Object>();
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("getRequestContext".equals(name)) {
+                return requestContext;
+            }
+            if ("getResponseContext".equals(name)) {
+                return responseContext;
+            }
+            if ("echo".equals(name)) {
+                Runnable hook = ON_ECHO.get();
+                if (hook != null) {
+                    hook.run();
+                }
+                Object value = requestContext.get((String) args[0]);
+                responseContext.put("echo", value);
+                return value != null ? value.toString() : null;
+            }
+            if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            }
+            if ("toString".equals(name)) {
+                return "EchoPort@" + Integer.toHexString(System.identityHashCode(proxy));
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    /**
+     * Dispatch whose invocations return the value of the request context
+     * property named by the message, also set as the {@code echo} property
+     * of the response context.
+     */
+    public static final class EchoDispatch<T> implements Dispatch<T>, AutoCloseable {
+        private final Class<T> type;
+        private final Map<String, Object> requestContext = new HashMap<String, Object>();
+        private final Map<String, Object> responseContext = new HashMap<String, Object>();
+        private final EchoBinding binding = new EchoBinding();
+        private volatile boolean closed;
+
+        EchoDispatch(Class<T> type) {
+            this.type = type;
+            DISPATCHES.incrementAndGet();
+        }
+
+        @Override
+        public T invoke(T msg) {
+            if (closed) {
+                throw new IllegalStateException("closed");
+            }
+            Object value = requestContext.get(String.valueOf(msg));
+            responseContext.put("echo", value);
+            return type.cast(value);
+        }
+
+        @Override
+        public Response<T> invokeAsync(T msg) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<?> invokeAsync(T msg, AsyncHandler<T> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void invokeOneWay(T msg) {
+            invoke(msg);
+        }
+
+        @Override
+        public Map<String, Object> getRequestContext() {
+            return requestContext;
+        }
+
+        @Override
+        public Map<String, Object> getResponseContext() {
+            return responseContext;
+        }
+
+        @Override
+        public Binding getBinding() {
+            return binding;
+        }
+
+        @Override
+        public EndpointReference getEndpointReference() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <E extends EndpointReference> E getEndpointReference(Class<E> clazz) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Tells whether the dispatch was closed.
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                CLOSED_DISPATCHES.incrementAndGet();
+            }
+        }
+    }
+
+    // the handler chain is returned as a copy, as by the JAX-WS runtimes
+    @SuppressWarnings("rawtypes")
+    private static final class EchoBinding implements Binding {
+        private List<Handler> handlerChain = new ArrayList<Handler>();
+
+        @Override
+        public List<Handler> getHandlerChain() {
+            return new ArrayList<Handler>(handlerChain);
+        }
+
+        @Override
+        public void setHandlerChain(List<Handler> chain) {
+            handlerChain = new ArrayList<Handler>(chain);
+        }
+
+        @Override
+        public String getBindingID() {
+            return "urn:stub";
+        }
+    }
+
+    /**
+     * Service delegate creating {@link Echo} ports and {@link EchoDispatch}es.
+     */
+    public static final class StubServiceDelegate extends ServiceDelegate {
+        private final QName serviceName;
+        private volatile Executor executor;
+        private volatile boolean closed;
+
+        StubServiceDelegate(QName serviceName) {
+            this.serviceName = serviceName;
+            DELEGATES.incrementAndGet();
+            Runnable hook = ON_DELEGATE.get();
+            if (hook != null) {
+                hook.run();
+            }
+        }
+
+        @Override
+        public <T> T getPort(QName portName, Class<T> serviceEndpointInterface) {
+            return port(serviceEndpointInterface);
+        }
+
+        @Override
+        public <T> T getPort(QName portName, Class<T> serviceEndpointInterface, WebServiceFeature... features) {
+            return port(serviceEndpointInterface);
+        }
+
+        @Override
+        public <T> T getPort(EndpointReference endpointReference, Class<T> serviceEndpointInterface,
+                             WebServiceFeature... features) {
+            return port(serviceEndpointInterface);
+        }
+
+        @Override
+        public <T> T getPort(Class<T> serviceEndpointInterface) {
+            return port(serviceEndpointInterface);
+        }
+
+        @Override
+        public <T> T getPort(Class<T> serviceEndpointInterface, WebServiceFeature... features) {
+            return port(serviceEndpointInterface);
+        }
+
+        @Override
+        public void addPort(QName portName, String bindingId, String endpointAddress) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> Dispatch<T> createDispatch(QName portName, Class<T> type, Service.Mode mode) {
+            return new EchoDispatch<T>(type);
+        }
+
+        @Override
+        public <T> Dispatch<T> createDispatch(QName portName, Class<T> type, Service.Mode mode,
+                                              WebServiceFeature... features) {
+            return new EchoDispatch<T>(type);
+        }
+
+        @Override
+        public <T> Dispatch<T> createDispatch(EndpointReference endpointReference, Class<T> type,
+                                              Service.Mode mode, WebServiceFeature... features) {
+            return new EchoDispatch<T>(type);
+        }
+
+        @Override
+        public Dispatch<Object> createDispatch(QName portName, JAXBContext context,
+                                               Service.Mode mode) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Dispatch<Object> createDispatch(QName portName, JAXBContext context,
+                                               Service.Mode mode, WebServiceFeature... features) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Dispatch<Object> createDispatch(EndpointReference endpointReference,
+                                               JAXBContext context, Service.Mode mode,
+                                               WebServiceFeature... features) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public QName getServiceName() {
+            return serviceName;
+        }
+
+        @Override
+        public Iterator<QName> getPorts() {
+            return Collections.<QName>emptyList().iterator();
+        }
+
+        @Override
+        public URL getWSDLDocumentLocation() {
+            return null;
+        }
+
+        @Override
+        public HandlerResolver getHandlerResolver() {
+            return null;
+        }
+
+        @Override
+        public void setHandlerResolver(HandlerResolver handlerResolver) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Executor getExecutor() {
+            return executor;
+        }
+
+        @Override
+        public void setExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * Tells whether the delegate was closed.
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                CLOSED_DELEGATES.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public ServiceDelegate createServiceDelegate(URL wsdlDocumentLocation, QName serviceName,
+                                                 Class<? extends Service> serviceClass) {
+        return new StubServiceDelegate(serviceName);
+    }
+
+    @Override
+    public ServiceDelegate createServiceDelegate(URL wsdlDocumentLocation, QName serviceName,
+                                                 Class<? extends Service> serviceClass,
+                                                 WebServiceFeature... features) {
+        return new StubServiceDelegate(serviceName);
+    }
+
+    /**
+     * Endpoint which can't be published at {@code unusable:} addresses.
+     */
+    public static final class StubEndpoint extends Endpoint {
+        private final Object implementor;
+        private final Binding binding = new EchoBinding();
+        private volatile Executor executor;
+        private volatile boolean published;
+        private volatile boolean stopped;
+        private List<Source> metadata;
+        private Map<String, Object> properties = new HashMap<String, Object>();
+
+        StubEndpoint(Object implementor) {
+            this.implementor = implementor;
+            ENDPOINT.set(this);
+        }
+
+        @Override
+        public Binding getBinding() {
+            return binding;
+        }
+
+        @Override
+        public Object getImplementor() {
+            return implementor;
+        }
+
+        @Override
+        public void publish(String address) {
+            if (published || stopped) {
+                throw new IllegalStateException("published or stopped");
+            }
+            if (address.startsWith("unusable:")) {
+                throw new IllegalArgumentException("Unusable address: " + address);
+            }
+            published = true;
+        }
+
+        @Override
+        public void publish(Object serverContext) {
+            throw new IllegalArgumentException("Unsupported server context: " + serverContext);
+        }
+
+        @Override
+        public void stop() {
+            published = false;
+            stopped = true;
+        }
+
+        /**
+         * Tells whether the endpoint was stopped.
+         */
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        @Override
+        public boolean isPublished() {
+            return published;
+        }
+
+        @Override
+        public List<Source> getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public void setMetadata(List<Source> metadata) {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Executor getExecutor() {
+            return executor;
+        }
+
+        @Override
+        public void setExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+
+        @Override
+        public void setProperties(Map<String, Object> properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        public EndpointReference getEndpointReference(Element... referenceParameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends EndpointReference> T getEndpointReference(Class<T> clazz, Element... referenceParameters) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Override
+    public Endpoint createEndpoint(String bindingId, Object implementor) {
+        return new StubEndpoint(implementor);
+    }
+
+    @Override
+    public Endpoint createEndpoint(String bindingId, Object implementor, WebServiceFeature... features) {
+        return new StubEndpoint(implementor);
+    }
+
+    @Override
+    public Endpoint createAndPublishEndpoint(String address, Object implementor) {
+        Endpoint endpoint = new StubEndpoint(implementor);
+        endpoint.publish(address);
+        return endpoint;
+    }
+
+    @Override
+    public Endpoint createAndPublishEndpoint(String address, Object implementor, WebServiceFeature... features) {
+        return createAndPublishEndpoint(address, implementor);
+    }
+
+    @Override
+    public EndpointReference readEndpointReference(Source eprInfoset) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public W3CEndpointReference createW3CEndpointReference(String address, QName serviceName, QName portName,
+                                                           List<Element> metadata, String wsdlDocumentLocation,
+                                                           List<Element> referenceParameters) {
+        throw new UnsupportedOperationException();
+    }
+}